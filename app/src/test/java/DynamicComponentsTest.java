@@ -0,0 +1,84 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * after every change DynamicComponents has the components that ComponentLabeler finds in the changed matrix
+ */
+class DynamicComponentsTest {
+
+    private static int[][] copy(int[][] arr2d) {
+        int[][] copy = new int[arr2d.length][];
+        for (int i = 0; i < arr2d.length; i++) {
+            copy[i] = arr2d[i].clone();
+        }
+        return copy;
+    }
+
+    private static void assertSameComponents(int[][] expected, DynamicComponents components, String what) {
+        Matrix matrix = new Matrix(expected);
+        ComponentLabels labels = ComponentLabeler.label(matrix);
+        assertEquals(labels.getCount(), components.getCount(), what);
+        assertEquals(labels.getNumOfSubs(), components.getNumOfSubs(), what);
+        assertEquals(matrix.getConnectedComponents(), components.toComponents(), what);
+    }
+
+    @Test
+    void changesKeepTheComponentsOfTheMatrix() {
+        Random random = new Random(18);
+        for (int round = 0; round < 300; round++) {
+            int rows = 1 + random.nextInt(20);
+            int columns = 1 + random.nextInt(20);
+            int percent = 20 + random.nextInt(70);
+            int[][] arr2d = new int[rows][columns];
+            for (int[] row : arr2d) {
+                for (int j = 0; j < columns; j++) {
+                    row[j] = random.nextInt(100) < percent ? 1 : 0;
+                }
+            }
+            DynamicComponents components = new DynamicComponents(new Matrix(copy(arr2d)));
+            assertSameComponents(arr2d, components, "round " + round);
+            for (int change = 0; change < 60; change++) {
+                String what;
+                if (random.nextInt(4) > 0) {
+                    int row = random.nextInt(rows);
+                    int column = random.nextInt(columns);
+                    int value = random.nextInt(100) < percent ? 1 : 0;
+                    components.set(row, column, value);
+                    arr2d[row][column] = value;
+                    what = "set (" + row + "," + column + ") to " + value;
+                } else {
+                    int top = random.nextInt(rows);
+                    int left = random.nextInt(columns);
+                    int[][] values = new int[1 + random.nextInt(rows - top)][1 + random.nextInt(columns - left)];
+                    for (int[] row : values) {
+                        for (int j = 0; j < row.length; j++) {
+                            row[j] = random.nextInt(100) < percent ? 1 : 0;
+                        }
+                    }
+                    components.patch(top, left, values);
+                    for (int i = 0; i < values.length; i++) {
+                        System.arraycopy(values[i], 0, arr2d[top + i], left, values[i].length);
+                    }
+                    what = "patch at (" + top + "," + left + ") " + Arrays.deepToString(values);
+                }
+                assertSameComponents(arr2d, components, "round " + round + ", change " + change + ": " + what);
+            }
+        }
+    }
+
+    @Test
+    void regionsOutOfTheMatrixAreRejected() {
+        DynamicComponents components = new DynamicComponents(new Matrix(new int[][]{{1, 0}, {0, 1}}));
+        int[][] one = {{1}};
+        assertThrows(IllegalArgumentException.class, () -> components.patch(Integer.MAX_VALUE, 0, one));
+        assertThrows(IllegalArgumentException.class, () -> components.patch(0, Integer.MAX_VALUE, one));
+        assertThrows(IllegalArgumentException.class, () -> components.patch(1, 1, new int[][]{{1, 1}}));
+        assertThrows(IllegalArgumentException.class, () -> components.patch(-1, 0, one));
+        assertEquals(2, components.getCount());
+    }
+}
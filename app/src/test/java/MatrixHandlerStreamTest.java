@@ -0,0 +1,120 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * the streams of components (GET_ONES_STREAM) of a binary session, against a server on a free port
+ * a stream that waits for credits must never block the thread that reads them
+ * the server is never stopped, TcpServer.stop ends the JVM
+ */
+class MatrixHandlerStreamTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(20);
+
+    private static int port;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        try (ServerSocket free = new ServerSocket(0)) {
+            port = free.getLocalPort();
+        }
+        ForkJoinPool analyticsPool = new ForkJoinPool(2);
+        MatrixResultCache cache = new MatrixResultCache(0);
+        new TcpServer(port, ExecutionMode.THREAD_POOL).run(() -> new MatrixHandler(analyticsPool, cache, null));
+        Thread.sleep(300); // let the server start listening
+    }
+
+    // a grid of isolated ones, every one is a component of its own
+    private static int[][] isolatedOnes(int size) {
+        int[][] arr2d = new int[size][size];
+        for (int i = 0; i < size; i += 2) {
+            for (int j = 0; j < size; j += 2) {
+                arr2d[i][j] = 1;
+            }
+        }
+        return arr2d;
+    }
+
+    @Test
+    void changeOfTheCellsCancelsAStreamWaitingForCredits() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            MatrixClient client = new MatrixClient("localhost", port, isolatedOnes(60), WireProtocol.BINARY);
+            client.sendMatrix();
+            try (Stream<Set<Index>> stream = client.getOnesStream(4)) {
+                Iterator<Set<Index>> components = stream.iterator();
+                assertEquals(1, components.next().size());
+
+                client.setCell(0, 1, 1); // joins (0,0) and (0,2) while the stream waits for credits
+                assertEquals(30 * 30 - 1, client.getOnesAsync().get(10, TimeUnit.SECONDS).size());
+
+                // the components that were on the way arrive, then the stream fails
+                assertThrows(UncheckedIOException.class, () -> components.forEachRemaining(component -> { }));
+            }
+            client.socket.close();
+        });
+    }
+
+    @Test
+    void streamsWaitingForCreditsDoNotBlockOtherRequests() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            MatrixClient client = new MatrixClient("localhost", port, isolatedOnes(60), WireProtocol.BINARY);
+            client.sendMatrix();
+            List<Stream<Set<Index>>> streams = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                Stream<Set<Index>> stream = client.getOnesStream(1);
+                assertEquals(1, stream.iterator().next().size()); // the stream has sent its window
+                streams.add(stream);
+            }
+            // no slot is left for a stream, but the other requests go on
+            try (Stream<Set<Index>> tooMany = client.getOnesStream(1)) {
+                assertThrows(UncheckedIOException.class, () -> tooMany.iterator().hasNext());
+            }
+            assertEquals(30 * 30, client.getOnesAsync().get(10, TimeUnit.SECONDS).size());
+
+            // a closed stream gives its slot back
+            streams.remove(0).close();
+            long started = System.nanoTime();
+            while (true) {
+                try (Stream<Set<Index>> again = client.getOnesStream(64)) {
+                    assertEquals(30 * 30, again.count());
+                    break;
+                } catch (UncheckedIOException e) {
+                    // the cancelled stream has not ended yet
+                    assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(10));
+                    Thread.sleep(10);
+                }
+            }
+            for (Stream<Set<Index>> stream : streams) {
+                stream.close();
+            }
+            client.socket.close();
+        });
+    }
+
+    @Test
+    void streamHasAllTheComponents() throws IOException {
+        MatrixClient client = new MatrixClient("localhost", port, isolatedOnes(60), WireProtocol.BINARY);
+        client.sendMatrix();
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            try (Stream<Set<Index>> stream = client.getOnesStream(8)) {
+                assertEquals(30 * 30, stream.count());
+            }
+        });
+        client.socket.close();
+    }
+}
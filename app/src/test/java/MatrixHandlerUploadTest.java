@@ -0,0 +1,61 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * the streaming upload (MATRIX_BEGIN, MATRIX_ROWS, MATRIX_END) of a binary session, against a server on a free port
+ * the server is never stopped, TcpServer.stop ends the JVM
+ */
+class MatrixHandlerUploadTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(20);
+
+    private static int port;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        try (ServerSocket free = new ServerSocket(0)) {
+            port = free.getLocalPort();
+        }
+        ForkJoinPool analyticsPool = new ForkJoinPool(2);
+        MatrixResultCache cache = new MatrixResultCache(0);
+        new TcpServer(port, ExecutionMode.THREAD_POOL).run(() -> new MatrixHandler(analyticsPool, cache, null));
+        Thread.sleep(300); // let the server start listening
+    }
+
+    private static ByteBuffer begin(int rows, int columns) {
+        return BinaryProtocol.allocate(8).putInt(rows).putInt(columns);
+    }
+
+    @Test
+    void hugeOrOverflowingDimensionsAreRejectedBeforeAllocating() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            MatrixClient client = new MatrixClient("localhost", port, new int[][]{{1}}, WireProtocol.BINARY);
+            int[][] dimensions = {{40_000, 40_000}, {65536, 65536}, {Integer.MAX_VALUE, 2}, {100_000, 100_000},
+                    {-1, 5}};
+            for (int[] dimension : dimensions) {
+                assertThrows(ExecutionException.class, () -> client.exchangeAsync(BinaryProtocol.MATRIX_BEGIN,
+                        begin(dimension[0], dimension[1])).get(10, TimeUnit.SECONDS),
+                        dimension[0] + "x" + dimension[1]);
+                // no upload was started
+                assertThrows(ExecutionException.class, () -> client.exchangeAsync(BinaryProtocol.MATRIX_END,
+                        BinaryProtocol.empty()).get(10, TimeUnit.SECONDS));
+            }
+
+            // the session goes on
+            client.arr2d = new int[][]{{1, 0, 1}, {1, 0, 1}};
+            client.streamMatrix(1);
+            assertEquals(2, client.getNumOfSubsAsync().get(10, TimeUnit.SECONDS));
+            client.socket.close();
+        });
+    }
+}
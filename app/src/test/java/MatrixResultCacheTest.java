@@ -0,0 +1,67 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * the entries of MatrixResultCache
+ */
+class MatrixResultCacheTest {
+
+    /**
+     * cells that fail while failing is set, like a labeling that runs out of memory
+     */
+    private static class FailingCells extends HeapCells {
+        boolean failing;
+
+        FailingCells(int[] cells) {
+            super(cells);
+        }
+
+        @Override
+        public int get(int cell) {
+            if (this.failing) {
+                throw new OutOfMemoryError("failing cells");
+            }
+            return super.get(cell);
+        }
+
+        @Override
+        public void copy(int from, int[] buffer, int offset, int length) {
+            if (this.failing) {
+                throw new OutOfMemoryError("failing cells");
+            }
+            super.copy(from, buffer, offset, length);
+        }
+    }
+
+    @Test
+    void failedComputationIsNotKept() throws Exception {
+        int[] cells = {1, 1, 0, 0, 0, 1, 1, 0, 1};
+        FailingCells failingCells = new FailingCells(cells.clone());
+        // the key of the matrix is computed before the labeling, only the labeling fails
+        Executor failingLabeling = task -> {
+            failingCells.failing = true;
+            try {
+                task.run();
+            } finally {
+                failingCells.failing = false;
+            }
+        };
+        MatrixResultCache cache = new MatrixResultCache(1 << 20);
+        MatrixResultCache.Entry failed = cache.getOrCompute(new Matrix(3, 3, failingCells), failingLabeling);
+        assertThrows(CompletionException.class, () -> failed.getNumOfSubs().getValue());
+        assertEquals(0, cache.getBytes());
+
+        // the next upload of the same cells computes them again
+        Matrix matrix = new Matrix(3, 3, cells);
+        MatrixResultCache.Entry entry = cache.getOrCompute(matrix, Runnable::run);
+        assertNotSame(failed, entry);
+        assertEquals(2, cache.getMisses());
+        assertEquals(matrix.getNumOfSubs(), entry.getNumOfSubs().getValue());
+    }
+}
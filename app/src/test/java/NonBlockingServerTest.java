@@ -0,0 +1,116 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * the non-blocking server (framed objects), against a server on a free port
+ * the server is never stopped, TcpServer.stop ends the JVM
+ */
+class NonBlockingServerTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(20);
+
+    private static int port;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        try (ServerSocket free = new ServerSocket(0)) {
+            port = free.getLocalPort();
+        }
+        ForkJoinPool analyticsPool = new ForkJoinPool(2);
+        MatrixResultCache cache = new MatrixResultCache(0);
+        new TcpServer(port, ExecutionMode.THREAD_POOL)
+                .runNonBlocking(() -> new MatrixHandler(analyticsPool, cache, null));
+        Thread.sleep(300); // let the server start listening
+    }
+
+    // the objects of a request as a single frame, like a framed Client sends them
+    private static void sendFrame(DataOutputStream out, Object... objects) throws IOException {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOut = new ObjectOutputStream(frame)) {
+            for (Object object : objects) {
+                objectOut.writeObject(object);
+            }
+        }
+        out.writeInt(frame.size());
+        frame.writeTo(out);
+        out.flush();
+    }
+
+    // the first object of a response frame
+    private static Object receiveFrame(DataInputStream in) throws Exception {
+        byte[] frame = new byte[in.readInt()];
+        in.readFully(frame);
+        try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(frame))) {
+            return objectIn.readObject();
+        }
+    }
+
+    private static int[][] randomMatrix(int size, long seed) {
+        Random random = new Random(seed);
+        int[][] arr2d = new int[size][size];
+        for (int[] row : arr2d) {
+            for (int j = 0; j < size; j++) {
+                row[j] = random.nextInt(3) == 0 ? 1 : 0;
+            }
+        }
+        return arr2d;
+    }
+
+    @Test
+    void illegalFrameClosesOnlyItsConnection() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            try (Socket bad = new Socket("localhost", port);
+                 Socket good = new Socket("localhost", port)) {
+                DataOutputStream badOut = new DataOutputStream(bad.getOutputStream());
+                badOut.writeInt(FrameConnection.MAX_FRAME_LENGTH + 1);
+                badOut.flush();
+                assertEquals(-1, bad.getInputStream().read());
+
+                // a matrix frame much bigger than the buffer of a connection
+                int[][] arr2d = randomMatrix(300, 12);
+                DataOutputStream out = new DataOutputStream(good.getOutputStream());
+                DataInputStream in = new DataInputStream(good.getInputStream());
+                sendFrame(out, "matrix", arr2d);
+                receiveFrame(in);
+                sendFrame(out, "getNumOfSubs");
+                assertEquals(new Matrix(arr2d).getNumOfSubs(), receiveFrame(in));
+            }
+        });
+    }
+
+    @Test
+    void pipelinedRequestsAreAllAnswered() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            try (Socket socket = new Socket("localhost", port)) {
+                int[][] arr2d = randomMatrix(40, 13);
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                sendFrame(out, "matrix", arr2d);
+                // the server stops reading while a request is handled, the requests wait in the socket
+                for (int i = 0; i < 200; i++) {
+                    sendFrame(out, "getNumOfSubs");
+                }
+                receiveFrame(in);
+                int expected = new Matrix(arr2d).getNumOfSubs();
+                for (int i = 0; i < 200; i++) {
+                    assertEquals(expected, receiveFrame(in));
+                }
+            }
+        });
+    }
+}
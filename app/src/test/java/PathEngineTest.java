@@ -0,0 +1,65 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * every engine of Matrix.getShortestPath finds a path as short as the one of BFS
+ */
+class PathEngineTest {
+
+    // checks that the path goes from start to end through neighbor cells that are not zero, returns its length
+    private static int check(Matrix matrix, Index[] indices, List<Index> path, String what) {
+        if (path == null || path.isEmpty()) {
+            return 0;
+        }
+        assertEquals(indices[0], path.get(0), what + ": the first index");
+        assertEquals(indices[1], path.get(path.size() - 1), what + ": the last index");
+        for (int i = 0; i < path.size(); i++) {
+            Index index = path.get(i);
+            assertNotEquals(0, matrix.getValue(index), what + ": a zero on the path");
+            if (i > 0) {
+                Index previous = path.get(i - 1);
+                assertEquals(1, Math.abs(index.getRow() - previous.getRow())
+                        + Math.abs(index.getColumn() - previous.getColumn()), what + ": a jump after " + previous);
+            }
+        }
+        return path.size();
+    }
+
+    @Test
+    void enginesFindPathsAsShortAsBfs() throws Exception {
+        Random random = new Random(9);
+        for (int round = 0; round < 2000; round++) {
+            int rows = 1 + random.nextInt(40);
+            int columns = 2 + random.nextInt(40);
+            int walls = 10 + random.nextInt(40); // percent
+            int[][] arr2d = new int[rows][columns];
+            for (int[] row : arr2d) {
+                for (int j = 0; j < columns; j++) {
+                    row[j] = random.nextInt(100) < walls ? 0 : 1;
+                }
+            }
+            int startRow = random.nextInt(rows);
+            int endRow = random.nextInt(rows);
+            int startColumn = random.nextInt(columns);
+            int endColumn = random.nextInt(columns);
+            if (startRow == endRow && startColumn == endColumn) {
+                continue;
+            }
+            arr2d[startRow][startColumn] = 1;
+            arr2d[endRow][endColumn] = 1;
+            Matrix matrix = new Matrix(arr2d);
+            Index[] indices = {new Index(startRow, startColumn, 1), new Index(endRow, endColumn, 1)};
+            String grid = rows + "x" + columns + " with " + walls + "% walls, round " + round;
+            int expected = check(matrix, indices, matrix.getShortestPath(indices, PathEngine.BFS), "BFS, " + grid);
+            for (PathEngine engine : PathEngine.values()) {
+                String what = engine + ", " + grid;
+                assertEquals(expected, check(matrix, indices, matrix.getShortestPath(indices, engine), what), what);
+            }
+        }
+    }
+}
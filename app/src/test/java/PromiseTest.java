@@ -0,0 +1,49 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PromiseTest {
+
+    @Test
+    void callbackThatThrowsAnErrorDoesNotStopTheOthers() {
+        Promise<Integer> promise = new Promise<>();
+        AtomicInteger ran = new AtomicInteger();
+        promise.whenComplete((value, failure) -> ran.incrementAndGet());
+        promise.whenComplete((value, failure) -> {
+            throw new AssertionError("a failing callback");
+        });
+        promise.whenComplete((value, failure) -> ran.incrementAndGet());
+        promise.setValue(1);
+        assertEquals(2, ran.get());
+    }
+
+    @Test
+    void thenApplyCompletesOnTheExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor(task -> new Thread(task, "executor"));
+        try {
+            for (boolean fails : new boolean[]{false, true}) {
+                Promise<Integer> promise = new Promise<>();
+                AtomicReference<String> thread = new AtomicReference<>();
+                Promise<String> next = promise.thenApply(String::valueOf, executor)
+                        .whenComplete((value, failure) -> thread.set(Thread.currentThread().getName()));
+                if (fails) {
+                    promise.setException(new IllegalStateException("failed"));
+                } else {
+                    promise.setValue(7);
+                }
+                executor.submit(() -> { }).get(10, TimeUnit.SECONDS); // the completion has run
+                assertTrue(next.isDone());
+                assertEquals("executor", thread.get(), fails ? "the failure" : "the value");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
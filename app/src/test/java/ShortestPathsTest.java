@@ -0,0 +1,103 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * the batched Matrix.getShortestPaths answers every pair like getShortestPath
+ */
+class ShortestPathsTest {
+
+    // the length of a path, 0 if there is none
+    private static int length(List<Index> path) {
+        return path == null ? 0 : path.size();
+    }
+
+    private static Index randomOne(int[][] arr2d, Random random) {
+        while (true) {
+            int row = random.nextInt(arr2d.length);
+            int column = random.nextInt(arr2d[0].length);
+            if (arr2d[row][column] != 0) {
+                return new Index(row, column, arr2d[row][column]);
+            }
+        }
+    }
+
+    @Test
+    void batchAnswersLikeSinglePairs() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Random random = new Random(10);
+            for (int round = 0; round < 200; round++) {
+                int size = 2 + random.nextInt(25);
+                int[][] arr2d = new int[size][size];
+                for (int[] row : arr2d) {
+                    for (int j = 0; j < size; j++) {
+                        row[j] = random.nextInt(3) == 0 ? 0 : 1;
+                    }
+                }
+                arr2d[0][0] = 1;
+                arr2d[size - 1][size - 1] = 1;
+                Matrix matrix = new Matrix(arr2d);
+                // few start indices, so the pairs share their searches
+                Index[] sources = {randomOne(arr2d, random), randomOne(arr2d, random)};
+                Index[][] pairs = new Index[1 + random.nextInt(12)][];
+                for (int i = 0; i < pairs.length; i++) {
+                    Index end;
+                    do {
+                        end = randomOne(arr2d, random);
+                    } while (end.equals(sources[i % 2]));
+                    pairs[i] = new Index[]{sources[i % 2], end};
+                }
+                List<List<Index>> paths = matrix.getShortestPaths(pairs, pool);
+                assertEquals(pairs.length, paths.size());
+                for (int i = 0; i < pairs.length; i++) {
+                    assertEquals(length(matrix.getShortestPath(pairs[i])), length(paths.get(i)),
+                            "pair " + i + " of round " + round);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void lastSearchCompletesThePromise() throws Exception {
+        int[][] arr2d = {{1, 1, 1}, {0, 0, 1}, {1, 1, 1}};
+        Matrix matrix = new Matrix(arr2d);
+        Index first = new Index(0, 0, 1);
+        Index last = new Index(2, 0, 1);
+        Index corner = new Index(0, 2, 1);
+        Index[][] pairs = {{first, last}, {corner, last}, {first, corner}};
+        // the searches wait in the queue, nothing waits for them
+        Queue<Runnable> queued = new ArrayDeque<>();
+        Promise<List<List<Index>>> paths = matrix.getShortestPathsAsync(pairs, queued::add);
+        assertEquals(2, queued.size()); // the pairs of first share a search
+        queued.poll().run();
+        assertFalse(paths.isDone());
+        queued.poll().run();
+        assertTrue(paths.isDone());
+        List<List<Index>> found = paths.getValue();
+        for (int i = 0; i < pairs.length; i++) {
+            assertEquals(length(matrix.getShortestPath(pairs[i])), length(found.get(i)), "pair " + i);
+        }
+    }
+
+    @Test
+    void illegalPairsAreRejected() {
+        Matrix matrix = new Matrix(new int[][]{{1, 1, 0}, {0, 1, 1}});
+        Index start = new Index(0, 0, 1);
+        Index[][] outOfTheMatrix = {{start, new Index(1, 2, 1)}, {start, new Index(5, 5, 1)}};
+        assertThrows(Exception.class, () -> matrix.getShortestPaths(outOfTheMatrix, Runnable::run));
+        Index[][] onAZero = {{start, new Index(0, 2, 0)}};
+        assertThrows(Exception.class, () -> matrix.getShortestPaths(onAZero, Runnable::run));
+    }
+}
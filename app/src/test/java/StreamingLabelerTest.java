@@ -0,0 +1,76 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * a streaming upload labels the matrix like ComponentLabeler, whatever the sizes of its chunks
+ */
+class StreamingLabelerTest {
+
+    private static int[][] random(Random random, int rows, int columns) {
+        int percent = 20 + random.nextInt(70);
+        int[][] arr2d = new int[rows][columns];
+        for (int[] row : arr2d) {
+            for (int j = 0; j < columns; j++) {
+                row[j] = random.nextInt(100) < percent ? 1 : 0;
+            }
+        }
+        return arr2d;
+    }
+
+    @Test
+    void chunksAreLabeledLikeTheWholeMatrix() throws Exception {
+        Random random = new Random(16);
+        for (int round = 0; round < 3000; round++) {
+            int rows = 1 + random.nextInt(25);
+            int columns = 1 + random.nextInt(25);
+            int[][] arr2d = random(random, rows, columns);
+            StreamingLabeler labeler = new StreamingLabeler(rows, columns);
+            for (int row = 0; row < rows; ) {
+                int count = Math.min(rows - row, 1 + random.nextInt(5));
+                IntBuffer chunk = IntBuffer.allocate(count * columns);
+                for (int i = row; i < row + count; i++) {
+                    chunk.put(arr2d[i]);
+                }
+                chunk.flip();
+                labeler.addRows(row, count, chunk);
+                row += count;
+            }
+            Matrix uploaded = labeler.finish();
+            for (int i = 0; i < rows; i++) {
+                int[] row = new int[columns];
+                uploaded.copyRow(i, row);
+                assertArrayEquals(arr2d[i], row);
+            }
+            ComponentLabels expected = ComponentLabeler.label(new Matrix(arr2d));
+            String what = Arrays.deepToString(arr2d);
+            assertEquals(expected.getCount(), labeler.getComponentCount(), what);
+            assertEquals(expected.getNumOfSubs(), labeler.getNumOfSubs(), what);
+
+            StreamingLabeler scanned = StreamingLabeler.scan(new Matrix(arr2d));
+            assertEquals(expected.getCount(), scanned.getComponentCount(), what);
+            assertEquals(expected.getNumOfSubs(), scanned.getNumOfSubs(), what);
+        }
+    }
+
+    @Test
+    void missingAndIllegalChunksFailTheUpload() {
+        StreamingLabeler missing = new StreamingLabeler(3, 2);
+        missing.addRows(0, 1, IntBuffer.wrap(new int[]{1, 0}));
+        assertThrows(Exception.class, missing::finish);
+
+        StreamingLabeler outOfOrder = new StreamingLabeler(3, 2);
+        outOfOrder.addRows(1, 1, IntBuffer.wrap(new int[]{1, 0}));
+        assertThrows(Exception.class, outOfOrder::finish);
+
+        StreamingLabeler tooShort = new StreamingLabeler(3, 2);
+        tooShort.addRows(0, 2, IntBuffer.wrap(new int[]{1, 0, 1}));
+        assertThrows(Exception.class, tooShort::finish);
+    }
+}
@@ -0,0 +1,94 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * the engines of Matrix.getWeightedShortestPath find paths of the same weight as HEAP (GridDijkstra)
+ */
+class WeightedPathEngineTest {
+
+    // the weight of a path is the sum of the values of its cells, -1 if there is no path
+    private static long weight(List<Index> path) {
+        if (path == null || path.isEmpty()) {
+            return -1;
+        }
+        long weight = 0;
+        for (Index index : path) {
+            weight += index.getValue();
+        }
+        return weight;
+    }
+
+    private static Index[] corners(int[][] arr2d) {
+        int lastRow = arr2d.length - 1;
+        int lastColumn = arr2d[0].length - 1;
+        return new Index[]{new Index(0, 0, arr2d[0][0]),
+                new Index(lastRow, lastColumn, arr2d[lastRow][lastColumn])};
+    }
+
+    @Test
+    void enginesFindPathsOfTheSameWeightAsHeap() throws Exception {
+        Random random = new Random(6);
+        for (int round = 0; round < 500; round++) {
+            int rows = 1 + random.nextInt(30);
+            int columns = 2 + random.nextInt(29);
+            int maxValue = random.nextBoolean() ? 9 : 5000; // above GridDial.MAX_WEIGHT AUTO picks HEAP
+            int[][] arr2d = new int[rows][columns];
+            for (int[] row : arr2d) {
+                for (int j = 0; j < columns; j++) {
+                    row[j] = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(maxValue);
+                }
+            }
+            arr2d[0][0] = 1;
+            arr2d[rows - 1][columns - 1] = 1;
+            Matrix matrix = new Matrix(arr2d);
+            long expected = weight(matrix.getWeightedShortestPath(corners(arr2d), WeightedPathEngine.HEAP));
+            for (WeightedPathEngine engine : WeightedPathEngine.values()) {
+                if (engine == WeightedPathEngine.BUCKET_QUEUE && matrix.getMaxValue() >= GridDial.MAX_WEIGHT) {
+                    assertThrows(IllegalArgumentException.class,
+                            () -> matrix.getWeightedShortestPath(corners(arr2d), WeightedPathEngine.BUCKET_QUEUE));
+                    continue;
+                }
+                assertEquals(expected, weight(matrix.getWeightedShortestPath(corners(arr2d), engine)),
+                        engine + " on " + rows + "x" + columns + ", round " + round);
+            }
+        }
+    }
+
+    @Test
+    void negativeValuesAreNotSearchedWithBuckets() throws Exception {
+        int[][] arr2d = {{1, -5, 1}, {1, 1, 1}};
+        Matrix matrix = new Matrix(arr2d);
+        List<Index> heap = matrix.getWeightedShortestPath(corners(arr2d), WeightedPathEngine.HEAP);
+        assertNotNull(heap);
+        // AUTO falls back to HEAP
+        assertEquals(weight(heap), weight(matrix.getWeightedShortestPath(corners(arr2d), WeightedPathEngine.AUTO)));
+        assertThrows(IllegalArgumentException.class,
+                () -> matrix.getWeightedShortestPath(corners(arr2d), WeightedPathEngine.BUCKET_QUEUE));
+    }
+
+    @Test
+    void valueRangeFollowsTheChangedCells() {
+        Matrix matrix = new Matrix(new int[][]{{1, 3}, {2, 5}});
+        assertEquals(5, matrix.getMaxValue());
+        matrix.setValue(1, 7);  // 3 -> 7, a new biggest value
+        assertEquals(7, matrix.getMaxValue());
+        matrix.setValue(1, 2);  // the biggest value is gone, 5 is the biggest again
+        assertEquals(5, matrix.getMaxValue());
+        matrix.setValue(0, -4); // the smallest value above zero is gone
+        assertEquals(-4, matrix.getMinValue());
+        assertEquals(2, matrix.getMinPositiveValue());
+    }
+
+    @Test
+    void bucketQueueRejectsNegativeKeys() {
+        BucketQueue queue = new BucketQueue();
+        queue.reset(4, 2);
+        assertThrows(IllegalArgumentException.class, () -> queue.insertOrDecrease(0, -1));
+    }
+}
@@ -0,0 +1,152 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * this class is the way of the benchmarks into the classes of the server
+ *
+ * the server is written in the default package, and a class of a named package cannot import a class
+ * of the default package - while JMH needs the benchmarks in a named package (it generates its code next to them).
+ * so the benchmarks reach Matrix, Index and the engines through method handles that are looked up once by name:
+ * every handle is a static final constant with an exact (Object based) type, the JIT inlines invokeExact
+ * of such a handle like a direct call, so the numbers are the numbers of the algorithms and not of reflection.
+ */
+final class AppBridge {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    static final Class<?> MATRIX = find("Matrix");
+    static final Class<?> INDEX = find("Index");
+    private static final Class<?> INDICES = Array.newInstance(INDEX, 0).getClass();
+    private static final Class<?> PATH_ENGINE = find("PathEngine");
+    private static final Class<?> WEIGHTED_PATH_ENGINE = find("WeightedPathEngine");
+
+    private static final MethodHandle NEW_MATRIX = constructor(MATRIX, int[][].class);
+    private static final MethodHandle NEW_INDEX = constructor(INDEX, int.class, int.class, int.class);
+    private static final MethodHandle GET_CONNECTED_COMPONENTS = method(MATRIX, "getConnectedComponents", Set.class);
+    private static final MethodHandle GET_CONNECTED_COMPONENTS_PARALLEL =
+            method(MATRIX, "getConnectedComponents", Set.class, ForkJoinPool.class);
+    private static final MethodHandle GET_NUM_OF_SUBS = method(MATRIX, "getNumOfSubs", int.class);
+    private static final MethodHandle GET_SHORTEST_PATH = method(MATRIX, "getShortestPath", List.class, INDICES);
+    private static final MethodHandle GET_SHORTEST_PATH_USING =
+            method(MATRIX, "getShortestPath", List.class, INDICES, PATH_ENGINE);
+    private static final MethodHandle GET_WEIGHTED_SHORTEST_PATH =
+            method(MATRIX, "getWeightedShortestPath", List.class, INDICES);
+    private static final MethodHandle GET_WEIGHTED_SHORTEST_PATH_USING =
+            method(MATRIX, "getWeightedShortestPath", List.class, INDICES, WEIGHTED_PATH_ENGINE);
+    private static final MethodHandle GET_NEIGHBORS = method(MATRIX, "getNeighbors", Collection.class, INDEX);
+    private static final MethodHandle GET_NEIGHBOR_CELLS =
+            method(MATRIX, "getNeighbors", int.class, int.class, int[].class);
+
+    private AppBridge() {
+    }
+
+    // a class of the server, by its name in the default package
+    private static Class<?> find(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(name + " is not on the class path, build the app module first", e);
+        }
+    }
+
+    // a constructor, typed (args) -> Object
+    private static MethodHandle constructor(Class<?> type, Class<?>... parameters) {
+        try {
+            MethodHandle handle = LOOKUP.findConstructor(type, MethodType.methodType(void.class, parameters));
+            return handle.asType(handle.type().changeReturnType(Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("no constructor of " + type.getName(), e);
+        }
+    }
+
+    // an instance method, typed (Object receiver, Object args...) -> returnType
+    private static MethodHandle method(Class<?> type, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            MethodHandle handle = LOOKUP.findVirtual(type, name, MethodType.methodType(returnType, parameters));
+            MethodType erased = handle.type().changeParameterType(0, Object.class);
+            for (int i = 1; i < erased.parameterCount(); i++) {
+                if (!erased.parameterType(i).isPrimitive() && erased.parameterType(i) != int[].class) {
+                    erased = erased.changeParameterType(i, Object.class);
+                }
+            }
+            return handle.asType(erased);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("no method " + name + " in " + type.getName(), e);
+        }
+    }
+
+    static Object matrix(int[][] cells) throws Throwable {
+        return (Object) NEW_MATRIX.invokeExact(cells);
+    }
+
+    static Object index(int row, int column, int value) throws Throwable {
+        return (Object) NEW_INDEX.invokeExact(row, column, value);
+    }
+
+    // a constant of PathEngine, by its name
+    static Object pathEngine(String name) {
+        return constant(PATH_ENGINE, name);
+    }
+
+    // a constant of WeightedPathEngine, by its name
+    static Object weightedPathEngine(String name) {
+        return constant(WEIGHTED_PATH_ENGINE, name);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object constant(Class<?> type, String name) {
+        return Enum.valueOf((Class) type, name);
+    }
+
+    // an Index[] of a start index and an end index, as the path functions take them
+    static Object indices(Object start, Object end) {
+        Object indices = Array.newInstance(INDEX, 2);
+        Array.set(indices, 0, start);
+        Array.set(indices, 1, end);
+        return indices;
+    }
+
+    static Set<?> getConnectedComponents(Object matrix) throws Throwable {
+        return (Set<?>) GET_CONNECTED_COMPONENTS.invokeExact(matrix);
+    }
+
+    static Set<?> getConnectedComponents(Object matrix, ForkJoinPool pool) throws Throwable {
+        return (Set<?>) GET_CONNECTED_COMPONENTS_PARALLEL.invokeExact(matrix, (Object) pool);
+    }
+
+    static int getNumOfSubs(Object matrix) throws Throwable {
+        return (int) GET_NUM_OF_SUBS.invokeExact(matrix);
+    }
+
+    static List<?> getShortestPath(Object matrix, Object indices) throws Throwable {
+        return (List<?>) GET_SHORTEST_PATH.invokeExact(matrix, indices);
+    }
+
+    static List<?> getShortestPath(Object matrix, Object indices, Object engine) throws Throwable {
+        return (List<?>) GET_SHORTEST_PATH_USING.invokeExact(matrix, indices, engine);
+    }
+
+    static List<?> getWeightedShortestPath(Object matrix, Object indices) throws Throwable {
+        return (List<?>) GET_WEIGHTED_SHORTEST_PATH.invokeExact(matrix, indices);
+    }
+
+    static List<?> getWeightedShortestPath(Object matrix, Object indices, Object engine) throws Throwable {
+        return (List<?>) GET_WEIGHTED_SHORTEST_PATH_USING.invokeExact(matrix, indices, engine);
+    }
+
+    static Collection<?> getNeighbors(Object matrix, Object index) throws Throwable {
+        return (Collection<?>) GET_NEIGHBORS.invokeExact(matrix, index);
+    }
+
+    static int getNeighbors(Object matrix, int cell, int[] buffer) throws Throwable {
+        return (int) GET_NEIGHBOR_CELLS.invokeExact(matrix, cell, buffer);
+    }
+}
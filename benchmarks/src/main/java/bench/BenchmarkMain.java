@@ -0,0 +1,26 @@
+package bench;
+
+import java.util.Arrays;
+
+/**
+ * this class runs the benchmarks like org.openjdk.jmh.Main (the same options, see -h),
+ * but with the allocation profiler on - every result also has gc.alloc.rate.norm, the bytes allocated
+ * by a single operation, which is how a change of an engine is judged besides its time
+ * another -prof on the command line replaces it
+ *
+ * e.g. java -jar benchmarks/target/benchmarks.jar ComponentsBenchmark -p size=1024 -p pattern=maze
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (!Arrays.asList(args).contains("-prof")) {
+            args = Arrays.copyOf(args, args.length + 2);
+            args[args.length - 2] = "-prof";
+            args[args.length - 1] = "gc";
+        }
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -0,0 +1,68 @@
+package bench;
+
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * the connected components and the submarines of a matrix, Matrix.getConnectedComponents and Matrix.getNumOfSubs
+ * the matrix is built once for every size and pattern, every invocation labels it from scratch
+ * getConnectedComponentsParallel labels the strips of the matrix on a ForkJoinPool of all the processors,
+ * against the sequential labeling of getConnectedComponents
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ComponentsBenchmark {
+
+    @Param({"64", "256", "1024", "4096"})
+    public int size;
+
+    @Param({"random-30", "random-60", "maze", "blob"})
+    public String pattern;
+
+    private Object matrix;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() throws Throwable {
+        this.matrix = AppBridge.matrix(Grids.generate(this.pattern, this.size, 42));
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.pool.shutdown();
+    }
+
+    @Benchmark
+    public Set<?> getConnectedComponents() throws Throwable {
+        return AppBridge.getConnectedComponents(this.matrix);
+    }
+
+    @Benchmark
+    public Set<?> getConnectedComponentsParallel() throws Throwable {
+        return AppBridge.getConnectedComponents(this.matrix, this.pool);
+    }
+
+    @Benchmark
+    public int getNumOfSubs() throws Throwable {
+        return AppBridge.getNumOfSubs(this.matrix);
+    }
+}
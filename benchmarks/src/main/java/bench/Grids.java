@@ -0,0 +1,158 @@
+package bench;
+
+import java.util.Random;
+
+/**
+ * this class generates the matrices of the benchmarks, always the same matrix for the same arguments
+ *
+ * the patterns are
+ * random-<percent> - every cell is 1 with the given probability, e.g. random-30 is many small components
+ *                    and random-60 is a single giant component with holes (just above the percolation threshold)
+ * maze - a perfect maze of corridors one cell wide, a single component and very long shortest paths
+ * blob - a single huge disk of ones, a single component without holes
+ */
+final class Grids {
+
+    private Grids() {
+    }
+
+    /**
+     * @param pattern - random-<percent>, maze or blob
+     * @param size - the rows and the columns of the matrix
+     * @param seed - the seed of the random cells
+     * @return - the cells of the matrix, 0 and 1
+     */
+    static int[][] generate(String pattern, int size, long seed) {
+        Random random = new Random(seed);
+        if (pattern.startsWith("random-")) {
+            double density = Integer.parseInt(pattern.substring("random-".length())) / 100.0;
+            int[][] cells = new int[size][size];
+            for (int[] row : cells) {
+                for (int j = 0; j < size; j++) {
+                    row[j] = random.nextDouble() < density ? 1 : 0;
+                }
+            }
+            return cells;
+        }
+        switch (pattern) {
+            case "maze":
+                return maze(size, random);
+            case "blob":
+                return blob(size);
+            default:
+                throw new IllegalArgumentException("unknown pattern: " + pattern);
+        }
+    }
+
+    /**
+     * this function carves a perfect maze with an iterative depth-first search
+     * the rooms are the cells of even row and even column, a corridor is opened between two rooms
+     * when the search moves from one to the other
+     */
+    private static int[][] maze(int size, Random random) {
+        int[][] cells = new int[size][size];
+        int rooms = (size + 1) / 2;
+        int[] stack = new int[rooms * rooms];
+        int[] directions = {0, 1, 2, 3};
+        int[] rowStep = {1, 0, -1, 0};
+        int[] columnStep = {0, 1, 0, -1};
+        int top = 0;
+        stack[top++] = 0;
+        cells[0][0] = 1;
+        while (top > 0) {
+            int room = stack[top - 1];
+            int row = room / rooms;
+            int column = room % rooms;
+            shuffle(directions, random);
+            boolean moved = false;
+            for (int direction : directions) {
+                int nextRow = row + rowStep[direction];
+                int nextColumn = column + columnStep[direction];
+                if (nextRow < 0 || nextRow >= rooms || nextColumn < 0 || nextColumn >= rooms
+                        || cells[2 * nextRow][2 * nextColumn] == 1) {
+                    continue;
+                }
+                cells[row + nextRow][column + nextColumn] = 1; // the corridor between the rooms
+                cells[2 * nextRow][2 * nextColumn] = 1;
+                stack[top++] = nextRow * rooms + nextColumn;
+                moved = true;
+                break;
+            }
+            if (!moved) {
+                top--;
+            }
+        }
+        return cells;
+    }
+
+    private static void shuffle(int[] values, Random random) {
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+    }
+
+    // a disk of ones in the middle of the matrix that almost touches its sides
+    private static int[][] blob(int size) {
+        int[][] cells = new int[size][size];
+        double center = (size - 1) / 2.0;
+        double radius = 0.48 * size;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                cells[i][j] = Math.hypot(i - center, j - center) <= radius ? 1 : 0;
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * this function turns the ones into weights for the weighted shortest path, the zeros stay walls
+     * @param cells - the cells of a matrix, 0 and 1
+     * @param seed - the seed of the weights
+     * @return - a copy where every 1 is a random weight of 1..9
+     */
+    static int[][] weighted(int[][] cells, long seed) {
+        Random random = new Random(seed);
+        int[][] weights = new int[cells.length][];
+        for (int i = 0; i < cells.length; i++) {
+            weights[i] = new int[cells[i].length];
+            for (int j = 0; j < cells[i].length; j++) {
+                weights[i][j] = cells[i][j] == 0 ? 0 : 1 + random.nextInt(9);
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * @param cells - the cells of a matrix
+     * @return - the start and the end of the path benchmarks: the first open cell from the upper left corner
+     * and the last open cell from the lower right corner, as {row, column, row, column}
+     */
+    static int[] corners(int[][] cells) {
+        int size = cells.length;
+        int[] corners = new int[4];
+        outer:
+        for (int d = 0; d < 2 * size; d++) {
+            for (int i = Math.max(0, d - size + 1); i <= Math.min(d, size - 1); i++) {
+                if (cells[i][d - i] != 0) {
+                    corners[0] = i;
+                    corners[1] = d - i;
+                    break outer;
+                }
+            }
+        }
+        outer:
+        for (int d = 2 * size - 2; d >= 0; d--) {
+            for (int i = Math.min(d, size - 1); i >= Math.max(0, d - size + 1); i--) {
+                if (cells[i][d - i] != 0) {
+                    corners[2] = i;
+                    corners[3] = d - i;
+                    break outer;
+                }
+            }
+        }
+        return corners;
+    }
+}
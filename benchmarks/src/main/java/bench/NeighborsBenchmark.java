@@ -0,0 +1,75 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * the neighbors of a cell, Matrix.getNeighbors(Index) that the old traversals used
+ * and Matrix.getNeighbors(int, int[]) over cell ids that the engines use now
+ * every invocation asks for the neighbors of CELLS random cells, the score is per cell
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NeighborsBenchmark {
+
+    private static final int CELLS = 1024;
+
+    @Param({"64", "256", "1024", "4096"})
+    public int size;
+
+    private Object matrix;
+    private Object[] indices;
+    private int[] cells;
+    private final int[] buffer = new int[4];
+
+    @Setup
+    public void setUp() throws Throwable {
+        this.matrix = AppBridge.matrix(Grids.generate("random-60", this.size, 42));
+        Random random = new Random(44);
+        this.indices = new Object[CELLS];
+        this.cells = new int[CELLS];
+        for (int k = 0; k < CELLS; k++) {
+            int row = random.nextInt(this.size);
+            int column = random.nextInt(this.size);
+            this.indices[k] = AppBridge.index(row, column, 0);
+            this.cells[k] = row * this.size + column;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CELLS)
+    public int getNeighbors() throws Throwable {
+        int count = 0;
+        for (Object index : this.indices) {
+            count += AppBridge.getNeighbors(this.matrix, index).size();
+        }
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CELLS)
+    public int getNeighborCells() throws Throwable {
+        int count = 0;
+        for (int cell : this.cells) {
+            count += AppBridge.getNeighbors(this.matrix, cell, this.buffer);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,102 @@
+package bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * the shortest path and the weighted shortest path between the opposite corners of a matrix,
+ * Matrix.getShortestPath with every PathEngine and Matrix.getWeightedShortestPath with every WeightedPathEngine
+ * (AUTO is BUCKET_QUEUE on these weights), so an engine is judged against the others on the same grids
+ * the corners are the open cells closest to the upper left and to the lower right corner,
+ * on random-30 there is usually no path - the search then covers the component of the start
+ *
+ * every benchmark runs only over the engines of its own kind, e.g. -p engine=BFS,JUMP_POINT -p weightedEngine=HEAP
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PathBenchmark {
+
+    @Param({"64", "256", "1024", "4096"})
+    public int size;
+
+    @Param({"random-30", "random-60", "maze", "blob"})
+    public String pattern;
+
+    private Object matrix;
+    private Object weightedMatrix; // the same walls, the open cells weigh 1..9
+    private Object indices;
+    private Object weightedIndices;
+
+    /**
+     * the engine of getShortestPath
+     */
+    @State(Scope.Benchmark)
+    public static class Engine {
+        @Param({"BFS", "A_STAR", "BIDIRECTIONAL_BFS", "JUMP_POINT"})
+        public String engine;
+
+        private Object value;
+
+        @Setup
+        public void setUp() {
+            this.value = AppBridge.pathEngine(this.engine);
+        }
+    }
+
+    /**
+     * the engine of getWeightedShortestPath
+     */
+    @State(Scope.Benchmark)
+    public static class WeightedEngine {
+        @Param({"HEAP", "BUCKET_QUEUE", "A_STAR"})
+        public String weightedEngine;
+
+        private Object value;
+
+        @Setup
+        public void setUp() {
+            this.value = AppBridge.weightedPathEngine(this.weightedEngine);
+        }
+    }
+
+    @Setup
+    public void setUp() throws Throwable {
+        int[][] cells = Grids.generate(this.pattern, this.size, 42);
+        int[][] weights = Grids.weighted(cells, 43);
+        int[] corners = Grids.corners(cells);
+        this.matrix = AppBridge.matrix(cells);
+        this.weightedMatrix = AppBridge.matrix(weights);
+        this.indices = AppBridge.indices(
+                AppBridge.index(corners[0], corners[1], cells[corners[0]][corners[1]]),
+                AppBridge.index(corners[2], corners[3], cells[corners[2]][corners[3]]));
+        this.weightedIndices = AppBridge.indices(
+                AppBridge.index(corners[0], corners[1], weights[corners[0]][corners[1]]),
+                AppBridge.index(corners[2], corners[3], weights[corners[2]][corners[3]]));
+    }
+
+    @Benchmark
+    public List<?> getShortestPath(Engine engine) throws Throwable {
+        return AppBridge.getShortestPath(this.matrix, this.indices, engine.value);
+    }
+
+    @Benchmark
+    public List<?> getWeightedShortestPath(WeightedEngine engine) throws Throwable {
+        return AppBridge.getWeightedShortestPath(this.weightedMatrix, this.weightedIndices, engine.value);
+    }
+}
@@ -0,0 +1,91 @@
+package bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * the Java serialization of the legacy protocol - a Matrix, as the server sends it back for "matrix",
+ * and a list of size Index objects, as a path or a component is sent
+ * writing goes to a buffer that is reused, reading comes from the bytes that were written in setUp
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SerializationBenchmark {
+
+    @Param({"64", "256", "1024", "4096"})
+    public int size;
+
+    private Object matrix;
+    private List<Object> indices;
+    private byte[] matrixBytes;
+    private byte[] indicesBytes;
+    private ByteArrayOutputStream buffer;
+
+    @Setup
+    public void setUp() throws Throwable {
+        this.matrix = AppBridge.matrix(Grids.generate("random-30", this.size, 42));
+        this.indices = new ArrayList<>(this.size);
+        for (int k = 0; k < this.size; k++) {
+            this.indices.add(AppBridge.index(k, k, 1));
+        }
+        this.buffer = new ByteArrayOutputStream();
+        this.matrixBytes = this.write(this.matrix).toByteArray();
+        this.indicesBytes = this.write(this.indices).toByteArray();
+    }
+
+    private ByteArrayOutputStream write(Object object) throws IOException {
+        this.buffer.reset();
+        try (ObjectOutputStream out = new ObjectOutputStream(this.buffer)) {
+            out.writeObject(object);
+        }
+        return this.buffer;
+    }
+
+    private static Object read(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    @Benchmark
+    public int writeMatrix() throws IOException {
+        return this.write(this.matrix).size();
+    }
+
+    @Benchmark
+    public Object readMatrix() throws IOException, ClassNotFoundException {
+        return read(this.matrixBytes);
+    }
+
+    @Benchmark
+    public int writeIndices() throws IOException {
+        return this.write(this.indices).size();
+    }
+
+    @Benchmark
+    public Object readIndices() throws IOException, ClassNotFoundException {
+        return read(this.indicesBytes);
+    }
+}
@@ -31,6 +31,9 @@ public class BFS<T extends Comparable<T>> {
                      add reachableNode to the workingQueue
                      set reachableNode to the visited set
         */
+        // the working queue and the visited set are kept per thread, so they must be emptied from the last traversal
+        this.workingQueue.get().clear();
+        this.visited.get().clear();
         this.addToQueue(someGraph.getOrigin());
         this.setAsVisited(someGraph.getOrigin());
         while(!this.isQueueEmpty()) {
@@ -0,0 +1,635 @@
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * this class is the compact binary protocol between MatrixClient and MatrixHandler
+ * instead of serialized objects, every request and every response is a frame:
+ *
+ * [int32 length][byte opcode][int32 request id][payload]
+ *
+ * the length counts the opcode, the request id and the payload, and all the numbers are little-endian
+ * a matrix is sent as rows, columns and the raw cells, an index is a pair of ints (row, column)
+ * and a path is its length (-1 if there is no path) followed by the pairs of its indices
+ *
+ * GET_ONES_STREAM is answered with many frames - a COMPONENT frame for every component and then a STREAM_END frame,
+ * all with the request id of GET_ONES_STREAM. the client asks with a window of credits, the server sends
+ * a component only for a credit and the client gives the credits back with CREDIT frames as it uses the components
+ *
+ * a client asks for the binary protocol by sending MAGIC and VERSION before anything else,
+ * the server answers with MAGIC and VERSION if it agrees. a legacy client starts with the header of
+ * ObjectOutputStream instead, so the server knows which protocol the client speaks
+ */
+public final class BinaryProtocol {
+    static final byte[] MAGIC = {'M', 'X', 'B', 'P'};
+    static final byte VERSION = 1;
+
+    // opcodes - the response to a request has the opcode of the request, or ERROR
+    static final byte MATRIX = 1;
+    static final byte GET_ONES = 2;
+    static final byte GET_NUM_OF_SUBS = 3;
+    static final byte GET_SHORTEST_PATH = 4;
+    static final byte GET_SHORTEST_PATH_USING = 5;
+    static final byte GET_SHORTEST_PATHS = 6;
+    static final byte GET_EASIEST_PATH = 7;
+    static final byte STOP = 8;
+    static final byte MATRIX_BEGIN = 9; // a streaming upload - rows and columns
+    static final byte MATRIX_ROWS = 10; // first row, number of rows and their cells, no response
+    static final byte MATRIX_END = 11; // answered with rows, columns, number of components and of submarines
+    static final byte LOAD_MATRIX = 12; // a path on the server (UTF-8), answered like MATRIX
+    static final byte SET_CELL = 13; // row, column and value, answered with the number of components and of submarines
+    static final byte PATCH_REGION = 14; // top, left, height, width and the cells of the region, answered like SET_CELL
+    static final byte GET_ONES_STREAM = 15; // the window of credits, answered with COMPONENT frames and STREAM_END
+    static final byte COMPONENT = 16; // a component of GET_ONES_STREAM - the number of runs and the runs
+    static final byte STREAM_END = 17; // the end of GET_ONES_STREAM - the number of components that were sent
+    static final byte CREDIT = 18; // the request id of a stream and more credits for it (0 or less cancels), no response
+    static final byte ERROR = 127;
+
+    // or'ed into the opcode of GET_ONES and of the path requests, the result is answered in its compact form:
+    // ComponentRuns instead of the cells of every component, CompactPath instead of the cells of every path
+    static final byte COMPACT = 0x40;
+
+    static final int HEADER_LENGTH = 4 + 1 + 4; // length, opcode, request id
+    static final int MAX_FRAME_LENGTH = 256 * 1024 * 1024;
+
+    private BinaryProtocol() {
+    }
+
+    /**
+     * a frame that was read from the stream
+     */
+    static final class Frame {
+        final byte opcode;
+        final int requestId;
+        final ByteBuffer payload; // little-endian, positioned at the start of the payload
+
+        // constructor
+        Frame(byte opcode, int requestId, ByteBuffer payload) {
+            this.opcode = opcode;
+            this.requestId = requestId;
+            this.payload = payload;
+        }
+    }
+
+    /*
+    handshake
+     */
+
+    // the client side of the handshake, returns true if the server agreed to the binary protocol
+    static boolean requestHandshake(OutputStream out, InputStream in) throws IOException {
+        out.write(MAGIC);
+        out.write(VERSION);
+        out.flush();
+        byte[] answer = in.readNBytes(MAGIC.length + 1);
+        return answer.length == MAGIC.length + 1
+                && Arrays.equals(answer, 0, MAGIC.length, MAGIC, 0, MAGIC.length)
+                && answer[MAGIC.length] == VERSION;
+    }
+
+    /**
+     * this function is the server side of the handshake
+     * it peeks at the first 4 bytes the client sent - a binary client starts with MAGIC,
+     * anything else is left in the stream for the legacy protocol
+     * (reading more than 4 bytes would wait forever for a legacy client, which waits for the header of the server)
+     * @param in - the stream from the client, must support mark
+     * @param out - the stream to the client
+     * @return - true if the client speaks the binary protocol
+     * @throws IOException - if the client asked for a version this server does not speak
+     */
+    static boolean acceptHandshake(InputStream in, OutputStream out) throws IOException {
+        in.mark(MAGIC.length);
+        byte[] start = in.readNBytes(MAGIC.length);
+        if (!Arrays.equals(start, MAGIC)) {
+            in.reset();
+            return false;
+        }
+        int version = in.read();
+        out.write(MAGIC);
+        out.write(version == VERSION ? VERSION : 0);
+        out.flush();
+        if (version != VERSION) {
+            throw new IOException("unsupported version of the binary protocol: " + version);
+        }
+        return true;
+    }
+
+    /*
+    frames
+     */
+
+    /**
+     * this function allocates a frame - the header is filled by writeFrame
+     * @param payloadLength - the number of bytes of the payload
+     * @return - little-endian buffer positioned at the start of the payload
+     */
+    static ByteBuffer allocate(int payloadLength) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + payloadLength).order(ByteOrder.LITTLE_ENDIAN);
+        frame.position(HEADER_LENGTH);
+        return frame;
+    }
+
+    // a frame without payload
+    static ByteBuffer empty() {
+        return allocate(0);
+    }
+
+    /**
+     * this function fills the header of the frame and writes it with a single write
+     * @param out - the stream to write to
+     * @param opcode - the opcode of the frame
+     * @param requestId - the id of the request the frame belongs to
+     * @param frame - a frame from allocate, positioned at the end of the payload
+     */
+    static void writeFrame(OutputStream out, byte opcode, int requestId, ByteBuffer frame) throws IOException {
+        int end = frame.position();
+        frame.putInt(0, end - 4);
+        frame.put(4, opcode);
+        frame.putInt(5, requestId);
+        out.write(frame.array(), 0, end);
+    }
+
+    /**
+     * this function reads a single frame
+     * @param in - the stream to read from
+     * @return - the frame, or null if the stream has ended between frames
+     * @throws IOException - if the stream has ended in the middle of a frame or the frame is too long
+     */
+    static Frame readFrame(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = Integer.reverseBytes(in.readInt());
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < HEADER_LENGTH - 4 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("illegal frame length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        ByteBuffer frame = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        byte opcode = frame.get();
+        int requestId = frame.getInt();
+        return new Frame(opcode, requestId, frame.slice().order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    /*
+    payloads
+     */
+
+    // rows, columns and the cells of the matrix row after row
+    static ByteBuffer encodeMatrix(int[][] array) {
+        int rows = array.length;
+        int columns = rows == 0 ? 0 : array[0].length;
+        ByteBuffer frame = allocate(8 + 4 * rows * columns);
+        frame.putInt(rows).putInt(columns);
+        for (int[] row : array) {
+            if (row.length != columns) {
+                throw new IllegalArgumentException("all the rows of the matrix must have the same length");
+            }
+            putInts(frame, row);
+        }
+        return frame;
+    }
+
+    static Matrix decodeMatrix(ByteBuffer payload) throws IOException {
+        int rows = payload.getInt();
+        int columns = payload.getInt();
+        if (rows < 0 || columns < 0 || (long) rows * columns * 4 != payload.remaining()) {
+            throw new IOException("illegal matrix of " + rows + "x" + columns);
+        }
+        int[] cells = new int[rows * columns];
+        payload.asIntBuffer().get(cells);
+        return new Matrix(rows, columns, cells);
+    }
+
+    // the answer to MATRIX - the size of the matrix the server has stored
+    static ByteBuffer encodeMatrixSize(Matrix matrix) {
+        return allocate(8).putInt(matrix.getRows()).putInt(matrix.getColumns());
+    }
+
+    // the opcode of a request without the COMPACT flag
+    static byte baseOf(byte opcode) {
+        return opcode == ERROR ? opcode : (byte) (opcode & ~COMPACT);
+    }
+
+    static boolean isCompact(byte opcode) {
+        return opcode != ERROR && (opcode & COMPACT) != 0;
+    }
+
+    // a request of these opcodes is not answered
+    static boolean hasResponse(byte opcode) {
+        return opcode != STOP && opcode != MATRIX_ROWS && opcode != CREDIT;
+    }
+
+    // a request of these opcodes changes the session, so it is handled in order with the requests around it
+    static boolean changesSession(byte opcode) {
+        return opcode == MATRIX || opcode == STOP || opcode == LOAD_MATRIX
+                || opcode == MATRIX_BEGIN || opcode == MATRIX_ROWS || opcode == MATRIX_END
+                || opcode == SET_CELL || opcode == PATCH_REGION;
+    }
+
+    // a request of these opcodes changes the cells of the matrix in place
+    static boolean isChange(byte opcode) {
+        return opcode == SET_CELL || opcode == PATCH_REGION;
+    }
+
+    // the rows of the array from firstRow, for a streaming upload
+    static ByteBuffer encodeRows(int[][] array, int firstRow, int rowCount) {
+        int columns = array[0].length;
+        ByteBuffer frame = allocate(8 + 4 * rowCount * columns);
+        frame.putInt(firstRow).putInt(rowCount);
+        for (int i = firstRow; i < firstRow + rowCount; i++) {
+            if (array[i].length != columns) {
+                throw new IllegalArgumentException("all the rows of the matrix must have the same length");
+            }
+            putInts(frame, array[i]);
+        }
+        return frame;
+    }
+
+    // the answer to MATRIX_END
+    static ByteBuffer encodeUploadSummary(StreamingLabeler upload) {
+        return allocate(16).putInt(upload.getRows()).putInt(upload.getColumns())
+                .putInt(upload.getComponentCount()).putInt(upload.getNumOfSubs());
+    }
+
+    static ByteBuffer encodeSetCell(int row, int column, int value) {
+        return allocate(12).putInt(row).putInt(column).putInt(value);
+    }
+
+    // top, left, height, width and the cells of the region row after row
+    static ByteBuffer encodePatch(int top, int left, int[][] values) {
+        int height = values.length;
+        int width = height == 0 ? 0 : values[0].length;
+        ByteBuffer frame = allocate(16 + 4 * height * width);
+        frame.putInt(top).putInt(left).putInt(height).putInt(width);
+        for (int[] row : values) {
+            if (row.length != width) {
+                throw new IllegalArgumentException("all the rows of the region must have the same length");
+            }
+            putInts(frame, row);
+        }
+        return frame;
+    }
+
+    // the region of PATCH_REGION, after top and left were read
+    static int[][] decodeRegion(ByteBuffer payload) throws IOException {
+        int height = payload.getInt();
+        int width = payload.getInt();
+        if (height < 0 || width < 0 || (long) height * width * 4 != payload.remaining()) {
+            throw new IOException("illegal region of " + height + "x" + width);
+        }
+        int[][] values = new int[height][width];
+        for (int[] row : values) {
+            payload.asIntBuffer().get(row);
+            payload.position(payload.position() + 4 * width);
+        }
+        return values;
+    }
+
+    // the answer to SET_CELL and PATCH_REGION - the number of components and of submarines after the change
+    static ByteBuffer encodeChangeSummary(int[] summary) {
+        return allocate(8).putInt(summary[0]).putInt(summary[1]);
+    }
+
+    static ByteBuffer encodeInt(int value) {
+        return allocate(4).putInt(value);
+    }
+
+    static ByteBuffer encodeError(String message) {
+        return encodeString(String.valueOf(message));
+    }
+
+    static String decodeError(ByteBuffer payload) {
+        return decodeString(payload);
+    }
+
+    // the rest of the payload is the string
+    static ByteBuffer encodeString(String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        return allocate(bytes.length).put(bytes);
+    }
+
+    static String decodeString(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // start index and end index
+    static ByteBuffer encodeIndices(Index[] indices) {
+        ByteBuffer frame = allocate(8 * indices.length);
+        putIndices(frame, indices);
+        return frame;
+    }
+
+    // the engine and then start index and end index
+    static ByteBuffer encodeIndices(PathEngine engine, Index[] indices) {
+        ByteBuffer frame = allocate(1 + 8 * indices.length);
+        frame.put((byte) engine.ordinal());
+        putIndices(frame, indices);
+        return frame;
+    }
+
+    static PathEngine decodeEngine(ByteBuffer payload) throws IOException {
+        int ordinal = payload.get();
+        PathEngine[] engines = PathEngine.values();
+        if (ordinal < 0 || ordinal >= engines.length) {
+            throw new IOException("unknown path engine: " + ordinal);
+        }
+        return engines[ordinal];
+    }
+
+    // the rest of the payload is pairs of (row, column)
+    static Index[] decodeIndices(ByteBuffer payload) {
+        Index[] indices = new Index[payload.remaining() / 8];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = new Index(payload.getInt(), payload.getInt());
+        }
+        return indices;
+    }
+
+    // the number of pairs and then start index and end index of every pair
+    static ByteBuffer encodePairs(Index[][] pairs) {
+        ByteBuffer frame = allocate(4 + 16 * pairs.length);
+        frame.putInt(pairs.length);
+        for (Index[] pair : pairs) {
+            if (pair == null || pair.length != 2) {
+                throw new IllegalArgumentException("every pair must contain a start index and an end index");
+            }
+            putIndices(frame, pair);
+        }
+        return frame;
+    }
+
+    static Index[][] decodePairs(ByteBuffer payload) throws IOException {
+        int count = payload.getInt();
+        if (count < 0 || (long) count * 16 != payload.remaining()) {
+            throw new IOException("illegal number of pairs: " + count);
+        }
+        Index[][] pairs = new Index[count][];
+        for (int i = 0; i < count; i++) {
+            pairs[i] = new Index[]{
+                    new Index(payload.getInt(), payload.getInt()),
+                    new Index(payload.getInt(), payload.getInt())};
+        }
+        return pairs;
+    }
+
+    static ByteBuffer encodePath(List<Index> path) {
+        ByteBuffer frame = allocate(pathLength(path));
+        putPath(frame, path);
+        return frame;
+    }
+
+    // the number of paths and then every path
+    static ByteBuffer encodePaths(List<List<Index>> paths) {
+        int length = 4;
+        for (List<Index> path : paths) {
+            length += pathLength(path);
+        }
+        ByteBuffer frame = allocate(length);
+        frame.putInt(paths.size());
+        for (List<Index> path : paths) {
+            putPath(frame, path);
+        }
+        return frame;
+    }
+
+    /**
+     * this function reads a path
+     * @param payload - the payload, positioned at the length of the path
+     * @param array - the matrix of the client, gives the values of the indices, null if the client does not have it
+     * @return - the path, or null if there is none
+     */
+    static List<Index> decodePath(ByteBuffer payload, int[][] array) {
+        int length = payload.getInt();
+        if (length < 0) {
+            return null;
+        }
+        List<Index> path = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            int row = payload.getInt();
+            int column = payload.getInt();
+            path.add(new Index(row, column, array == null ? 0 : array[row][column]));
+        }
+        return path;
+    }
+
+    static List<List<Index>> decodePaths(ByteBuffer payload, int[][] array) {
+        int count = payload.getInt();
+        List<List<Index>> paths = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            paths.add(decodePath(payload, array));
+        }
+        return paths;
+    }
+
+    // the number of components and then the size and the pairs of every component
+    static ByteBuffer encodeComponents(Set<Set<Index>> components) {
+        int length = 4;
+        for (Set<Index> component : components) {
+            length += 4 + 8 * component.size();
+        }
+        ByteBuffer frame = allocate(length);
+        frame.putInt(components.size());
+        for (Set<Index> component : components) {
+            frame.putInt(component.size());
+            for (Index index : component) {
+                frame.putInt(index.getRow()).putInt(index.getColumn());
+            }
+        }
+        return frame;
+    }
+
+    static Set<Set<Index>> decodeComponents(ByteBuffer payload) {
+        int count = payload.getInt();
+        Set<Set<Index>> components = new HashSet<>(count * 4 / 3 + 1);
+        for (int i = 0; i < count; i++) {
+            int size = payload.getInt();
+            Set<Index> component = new HashSet<>(size * 4 / 3 + 1);
+            for (int j = 0; j < size; j++) {
+                // the components are made of ones
+                component.add(new Index(payload.getInt(), payload.getInt(), 1));
+            }
+            components.add(component);
+        }
+        return components;
+    }
+
+    // the number of components, the number of runs, the first run of every component and then the runs
+    static ByteBuffer encodeRuns(ComponentRuns runs) {
+        int[] offsets = runs.offsets();
+        int[] cells = runs.runs();
+        ByteBuffer frame = allocate(8 + 4 * offsets.length + 4 * cells.length);
+        frame.putInt(runs.getCount()).putInt(runs.getRunCount());
+        putInts(frame, offsets);
+        putInts(frame, cells);
+        return frame;
+    }
+
+    static ComponentRuns decodeRuns(ByteBuffer payload) {
+        int count = payload.getInt();
+        int runCount = payload.getInt();
+        int[] offsets = new int[count + 1];
+        int[] runs = new int[3 * runCount];
+        payload.asIntBuffer().get(offsets).get(runs);
+        return new ComponentRuns(offsets, runs);
+    }
+
+    // a single component of GET_ONES_STREAM - the number of runs and then the runs
+    static ByteBuffer encodeComponentRuns(int[] runs) {
+        ByteBuffer frame = allocate(4 + 4 * runs.length);
+        frame.putInt(runs.length / 3);
+        putInts(frame, runs);
+        return frame;
+    }
+
+    static Set<Index> decodeComponentRuns(ByteBuffer payload) {
+        int runCount = payload.getInt();
+        Set<Index> component = new HashSet<>();
+        for (int run = 0; run < runCount; run++) {
+            int row = payload.getInt();
+            int first = payload.getInt();
+            int last = payload.getInt();
+            for (int column = first; column <= last; column++) {
+                component.add(new Index(row, column, 1)); // the components are made of ones
+            }
+        }
+        return component;
+    }
+
+    static ByteBuffer encodeCredit(int streamId, int credits) {
+        return allocate(8).putInt(streamId).putInt(credits);
+    }
+
+    // the number of cells (-1 if there is no path), the first cell and the moves
+    static ByteBuffer encodeCompactPath(List<Index> path) {
+        CompactPath compact = CompactPath.of(path);
+        ByteBuffer frame = allocate(compactPathLength(compact));
+        putCompactPath(frame, compact);
+        return frame;
+    }
+
+    // the number of paths and then every path in its compact form
+    static ByteBuffer encodeCompactPaths(List<List<Index>> paths) {
+        List<CompactPath> compacts = new ArrayList<>(paths.size());
+        int length = 4;
+        for (List<Index> path : paths) {
+            CompactPath compact = CompactPath.of(path);
+            compacts.add(compact);
+            length += compactPathLength(compact);
+        }
+        ByteBuffer frame = allocate(length);
+        frame.putInt(compacts.size());
+        for (CompactPath compact : compacts) {
+            putCompactPath(frame, compact);
+        }
+        return frame;
+    }
+
+    // a path in its compact form, or null if there is none
+    static CompactPath decodeCompactPath(ByteBuffer payload) {
+        int length = payload.getInt();
+        if (length < 0) {
+            return null;
+        }
+        int startRow = payload.getInt();
+        int startColumn = payload.getInt();
+        byte[] moves = new byte[CompactPath.movesLength(length)];
+        payload.get(moves);
+        return new CompactPath(startRow, startColumn, length, moves);
+    }
+
+    static List<CompactPath> decodeCompactPaths(ByteBuffer payload) {
+        int count = payload.getInt();
+        List<CompactPath> paths = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            paths.add(decodeCompactPath(payload));
+        }
+        return paths;
+    }
+
+    /**
+     * this function returns the name of the request of an opcode, for the messages of the server
+     * @param opcode - the opcode
+     * @return - the name of the request, as in the legacy protocol
+     */
+    static String nameOf(byte opcode) {
+        if (isCompact(opcode)) {
+            return nameOf(baseOf(opcode)) + " (compact)";
+        }
+        switch (opcode) {
+            case MATRIX: return "matrix";
+            case GET_ONES: return "getOnes";
+            case GET_NUM_OF_SUBS: return "getNumOfSubs";
+            case GET_SHORTEST_PATH: return "getShortestPath";
+            case GET_SHORTEST_PATH_USING: return "getShortestPathUsing";
+            case GET_SHORTEST_PATHS: return "getShortestPaths";
+            case GET_EASIEST_PATH: return "getEasiestPath";
+            case STOP: return "stop";
+            case MATRIX_BEGIN: return "matrixBegin";
+            case MATRIX_ROWS: return "matrixRows";
+            case MATRIX_END: return "matrixEnd";
+            case LOAD_MATRIX: return "loadMatrix";
+            case SET_CELL: return "setCell";
+            case PATCH_REGION: return "patchRegion";
+            case GET_ONES_STREAM: return "getOnesStream";
+            case COMPONENT: return "component";
+            case STREAM_END: return "streamEnd";
+            case CREDIT: return "credit";
+            case ERROR: return "error";
+            default: return "opcode " + opcode;
+        }
+    }
+
+    // puts the ints at the position of the buffer and moves the position after them
+    private static void putInts(ByteBuffer frame, int[] values) {
+        frame.asIntBuffer().put(values);
+        frame.position(frame.position() + 4 * values.length);
+    }
+
+    private static void putIndices(ByteBuffer frame, Index[] indices) {
+        for (Index index : indices) {
+            frame.putInt(index.getRow()).putInt(index.getColumn());
+        }
+    }
+
+    private static int compactPathLength(CompactPath path) {
+        return 4 + (path == null ? 0 : 8 + CompactPath.movesLength(path.size()));
+    }
+
+    private static void putCompactPath(ByteBuffer frame, CompactPath path) {
+        if (path == null) {
+            frame.putInt(-1);
+            return;
+        }
+        frame.putInt(path.size()).putInt(path.getStartRow()).putInt(path.getStartColumn());
+        frame.put(path.moves());
+    }
+
+    private static int pathLength(List<Index> path) {
+        return 4 + (path == null ? 0 : 8 * path.size());
+    }
+
+    private static void putPath(ByteBuffer frame, List<Index> path) {
+        if (path == null) {
+            frame.putInt(-1);
+            return;
+        }
+        frame.putInt(path.size());
+        for (Index index : path) {
+            frame.putInt(index.getRow()).putInt(index.getColumn());
+        }
+    }
+}
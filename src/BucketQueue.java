@@ -0,0 +1,121 @@
+import java.util.Arrays;
+
+/**
+ * This class implements Dial's bucket queue of int ids (0..capacity-1) ordered by long keys
+ * it can be used when every key that is inserted is at most maxStep above the smallest key in the queue,
+ * as in Dijkstra with integer weights that are not bigger than maxStep.
+ *
+ * there is a bucket for every key in the range [smallest, smallest + maxStep], the buckets are reused
+ * circularly (key % (maxStep + 1)), and every bucket is a doubly linked list kept in int arrays,
+ * so insert, decrease-key and removing the smallest id cost O(1) plus the empty buckets that are skipped.
+ */
+public class BucketQueue {
+
+    private int[] head = new int[0];      // the first id of every bucket, or -1
+    private int[] next = new int[0];      // the next id in the bucket of an id, or -1
+    private int[] previous = new int[0];  // the previous id in the bucket of an id, or -1 if it is the first one
+    private long[] keys = new long[0];
+    private boolean[] queued = new boolean[0];
+    private int size = 0;
+    private long cursor = 0;              // no id in the queue has a key smaller than cursor
+
+    /**
+     * this function empties the queue and prepares it for ids 0..capacity-1 and keys steps up to maxStep
+     * @param capacity - the number of ids
+     * @param maxStep - the biggest difference between the key of an inserted id and the smallest key
+     */
+    public void reset(int capacity, int maxStep) {
+        if (maxStep < 0 || maxStep == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("the biggest step of a bucket queue must be in 0.."
+                    + (Integer.MAX_VALUE - 1) + ", not " + maxStep);
+        }
+        if (this.next.length < capacity) {
+            this.next = new int[capacity];
+            this.previous = new int[capacity];
+            this.keys = new long[capacity];
+            this.queued = new boolean[capacity];
+        } else {
+            this.clearQueued();
+        }
+        if (this.head.length != maxStep + 1) {
+            this.head = new int[maxStep + 1];
+        }
+        Arrays.fill(this.head, -1);
+        this.size = 0;
+        this.cursor = 0;
+    }
+
+    // marks the ids that are left from the last use as not queued, costs only the ids that are left
+    private void clearQueued() {
+        for (int bucket = 0; bucket < this.head.length && this.size > 0; bucket++) {
+            for (int id = this.head[bucket]; id != -1; id = this.next[id]) {
+                this.queued[id] = false;
+                this.size--;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * this function inserts id with key, or moves it to the bucket of key if it is queued with a bigger key
+     * @param id - some id
+     * @param key - the key of id, not negative, not smaller than the smallest key and at most maxStep above it
+     * @throws IllegalArgumentException - if the key is negative
+     */
+    public void insertOrDecrease(int id, long key) {
+        if (key < 0) {
+            throw new IllegalArgumentException("a bucket queue has no bucket for the negative key " + key);
+        }
+        if (this.queued[id]) {
+            if (this.keys[id] <= key) {
+                return;
+            }
+            this.unlink(id);
+        } else {
+            this.queued[id] = true;
+            this.size++;
+        }
+        if (this.size == 1 || key < this.cursor) {
+            this.cursor = key;
+        }
+        this.keys[id] = key;
+        int bucket = (int) (key % this.head.length);
+        this.previous[id] = -1;
+        this.next[id] = this.head[bucket];
+        if (this.head[bucket] != -1) {
+            this.previous[this.head[bucket]] = id;
+        }
+        this.head[bucket] = id;
+    }
+
+    /**
+     * this function removes an id with the smallest key
+     * @return - the removed id
+     */
+    public int poll() {
+        int bucket = (int) (this.cursor % this.head.length);
+        while (this.head[bucket] == -1) {
+            this.cursor++;
+            bucket = bucket + 1 == this.head.length ? 0 : bucket + 1;
+        }
+        int id = this.head[bucket];
+        this.unlink(id);
+        this.queued[id] = false;
+        this.size--;
+        return id;
+    }
+
+    private void unlink(int id) {
+        if (this.previous[id] == -1) {
+            this.head[(int) (this.keys[id] % this.head.length)] = this.next[id];
+        } else {
+            this.next[this.previous[id]] = this.next[id];
+        }
+        if (this.next[id] != -1) {
+            this.previous[this.next[id]] = this.previous[id];
+        }
+    }
+}
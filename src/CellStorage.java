@@ -0,0 +1,30 @@
+import java.io.Serializable;
+
+/**
+ * This interface defines where the cells of a Matrix are kept
+ * the cells are addressed by their cell id (row * columns + column)
+ *
+ * HeapCells keeps them in an int[] on the heap,
+ * MappedCells keeps them in a memory-mapped file, so a matrix can be larger than the heap
+ */
+public interface CellStorage extends Serializable {
+
+    // the number of cells
+    int size();
+
+    int get(int cell);
+
+    void set(int cell, int value);
+
+    /**
+     * this function copies consecutive cells (e.g. a row) into an array
+     * @param from - the first cell
+     * @param buffer - the array to copy to
+     * @param offset - the position of the first cell in buffer
+     * @param length - the number of cells
+     */
+    void copy(int from, int[] buffer, int offset, int length);
+
+    // true if the cells are not kept on the heap
+    boolean isMapped();
+}
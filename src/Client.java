@@ -9,10 +9,13 @@
          * Operational socket (client socket) - 2 way pipeline to read/write messages
          */
 
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.*;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 /**
  * client is an abstract class that create socket between client to server
@@ -23,6 +26,12 @@ import java.net.Socket;
  * this class also know to send object to handler
  *
  * this class send and receive objects using Object Output Stream and Object Input Stream
+ * when the server runs in non-blocking mode the client is framed - the objects of a request are collected
+ * into a single frame (4 bytes length and the serialized objects) that is sent before waiting for the response
+ * with the binary protocol the client sends frames of BinaryProtocol instead of objects,
+ * every request is tagged with an id, so many requests can be in flight on the same connection -
+ * a reader thread completes the future of every response by its id, in the order the server answers,
+ * and hands the frames of a stream (a request that is answered with many frames) to the listener of the stream
  *
  * this class also printing info message and error message to screen
  */
@@ -33,11 +42,67 @@ public abstract class Client {
     ObjectOutputStream toServer;
     ObjectInputStream fromServer;
 
+    WireProtocol protocol;
+    boolean framed;
+    DataOutputStream frameOut;
+    DataInputStream frameIn;
+    ByteArrayOutputStream pendingFrame; // the objects of the request that was not sent yet (framed)
+    int lastRequestId; // binary, guarded by frameOut
+    final Map<Integer, CompletableFuture<ByteBuffer>> inFlight = new ConcurrentHashMap<>(); // binary
+    final Map<Integer, StreamListener> streams = new ConcurrentHashMap<>(); // binary, until their STREAM_END
+    volatile IOException connectionFailure; // binary, set when the reader thread ends
+
+    /**
+     * receives the frames of a stream (binary protocol), in the reader thread - it must not wait
+     */
+    protected interface StreamListener {
+        // a frame of the stream, the last one is STREAM_END
+        void onFrame(BinaryProtocol.Frame frame);
+
+        // the stream has failed - an ERROR frame or the end of the connection, no frames follow
+        void onFailure(IOException failure);
+    }
+
     public Client(String ipAddr, int port) throws IOException {
+        this(ipAddr, port, WireProtocol.OBJECTS);
+    }
+
+    public Client(String ipAddr, int port, WireProtocol protocol) throws IOException {
         this.socket = new Socket(ipAddr, port);
         this.id = "Client " + this.socket.getLocalSocketAddress().toString().split(":")[1];
-        this.toServer = new ObjectOutputStream(socket.getOutputStream());
-        this.fromServer = new ObjectInputStream(socket.getInputStream());
+        if (protocol == WireProtocol.BINARY) {
+            // the frames are small and flushed one by one, a CREDIT must not wait for the ack of the frame before it
+            this.socket.setTcpNoDelay(true);
+            this.frameOut = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.frameIn = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            if (BinaryProtocol.requestHandshake(this.frameOut, this.frameIn)) {
+                this.protocol = protocol;
+                Thread reader = new Thread(this::readResponses, this.id + " reader");
+                reader.setDaemon(true);
+                reader.start();
+                return;
+            }
+            // the server does not speak the binary protocol - connect again with the legacy protocol
+            this.info("The server refused the binary protocol, using objects");
+            this.socket.close();
+            this.socket = new Socket(ipAddr, port);
+            this.id = "Client " + this.socket.getLocalSocketAddress().toString().split(":")[1];
+            protocol = WireProtocol.OBJECTS;
+        }
+        this.protocol = protocol;
+        this.framed = protocol == WireProtocol.FRAMED_OBJECTS;
+        if (this.framed) {
+            this.frameOut = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.frameIn = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        } else {
+            this.toServer = new ObjectOutputStream(socket.getOutputStream());
+            this.fromServer = new ObjectInputStream(socket.getInputStream());
+        }
+    }
+
+    // true if the client speaks the binary protocol with the server
+    protected boolean isBinary() {
+        return this.protocol == WireProtocol.BINARY;
     }
 
     protected void send(Object object) {
@@ -57,18 +122,47 @@ public abstract class Client {
             description = "data";
         }
         try {
+            if (this.framed && this.pendingFrame == null) {
+                this.pendingFrame = new ByteArrayOutputStream();
+                this.toServer = new ObjectOutputStream(this.pendingFrame);
+            }
             this.toServer.writeObject(object);
+            // forget the objects that were sent, else the handle table keeps them for the whole session
+            this.toServer.reset();
         } catch (IOException e) {
             this.err("Failed to send " + description + " to server");
         }
     }
 
+    /**
+     * framed client only - sends the objects collected since the last request as a single frame
+     * @throws IOException - if the frame could not be sent
+     */
+    protected void sendFrame() throws IOException {
+        if (this.pendingFrame == null) {
+            return;
+        }
+        this.toServer.flush();
+        this.frameOut.writeInt(this.pendingFrame.size());
+        this.pendingFrame.writeTo(this.frameOut);
+        this.frameOut.flush();
+        this.pendingFrame = null;
+        this.toServer = null;
+    }
+
     /**
      *
      * @return - receiving object from server using object input stream and return it to handler
      */
     protected Object receive() {
         try {
+            if (this.framed) {
+                // the request is complete once the client waits for its response
+                this.sendFrame();
+                byte[] frame = new byte[this.frameIn.readInt()];
+                this.frameIn.readFully(frame);
+                this.fromServer = new ObjectInputStream(new ByteArrayInputStream(frame));
+            }
             Object response = this.fromServer.readObject();
             this.info("Received response from server");
             return response;
@@ -78,6 +172,134 @@ public abstract class Client {
         return null;
     }
 
+    /**
+     * binary protocol only - sends a request without waiting for its response
+     * @param opcode - the opcode of the request (from BinaryProtocol)
+     * @param frame - the frame of the request, from BinaryProtocol.allocate
+     * @return - completes with the payload of the response, or exceptionally if the request failed
+     */
+    protected CompletableFuture<ByteBuffer> exchangeAsync(byte opcode, ByteBuffer frame) {
+        CompletableFuture<ByteBuffer> response = new CompletableFuture<>();
+        try {
+            synchronized (this.frameOut) {
+                int requestId = ++this.lastRequestId;
+                if (!BinaryProtocol.hasResponse(opcode)) {
+                    response.complete(null);
+                } else {
+                    this.inFlight.put(requestId, response);
+                }
+                if (this.connectionFailure != null) {
+                    throw this.connectionFailure;
+                }
+                BinaryProtocol.writeFrame(this.frameOut, opcode, requestId, frame);
+                this.frameOut.flush();
+            }
+        } catch (IOException e) {
+            this.err("Failed to send '" + BinaryProtocol.nameOf(opcode) + "' to server");
+            this.inFlight.values().remove(response);
+            response.completeExceptionally(e);
+        }
+        return response;
+    }
+
+    /**
+     * binary protocol only - sends a request that is answered with many frames
+     * @param opcode - the opcode of the request (from BinaryProtocol)
+     * @param frame - the frame of the request, from BinaryProtocol.allocate
+     * @param listener - receives the frames of the response until STREAM_END
+     * @return - the request id of the stream, for the CREDIT frames
+     * @throws IOException - if the request could not be sent, the listener is not called then
+     */
+    protected int openStream(byte opcode, ByteBuffer frame, StreamListener listener) throws IOException {
+        synchronized (this.frameOut) {
+            int requestId = ++this.lastRequestId;
+            try {
+                if (this.connectionFailure != null) {
+                    throw this.connectionFailure;
+                }
+                this.streams.put(requestId, listener);
+                BinaryProtocol.writeFrame(this.frameOut, opcode, requestId, frame);
+                this.frameOut.flush();
+            } catch (IOException e) {
+                this.err("Failed to send '" + BinaryProtocol.nameOf(opcode) + "' to server");
+                this.streams.remove(requestId);
+                throw e;
+            }
+            return requestId;
+        }
+    }
+
+    /**
+     * binary protocol only - sends a request and waits for its response
+     * @param opcode - the opcode of the request (from BinaryProtocol)
+     * @param frame - the frame of the request, from BinaryProtocol.allocate
+     * @return - the payload of the response, or null if the request failed
+     */
+    protected ByteBuffer exchange(byte opcode, ByteBuffer frame) {
+        try {
+            ByteBuffer response = this.exchangeAsync(opcode, frame).get();
+            if (response != null) {
+                this.info("Received response from server");
+            }
+            return response;
+        } catch (ExecutionException e) {
+            this.err("Failed to receive response from server: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.err("Interrupted while waiting for the server");
+        }
+        return null;
+    }
+
+    /**
+     * binary protocol only - the reader thread, completes the requests in flight as their responses arrive
+     * when the connection ends, the requests that are still in flight fail
+     */
+    private void readResponses() {
+        IOException failure = new EOFException("the server has closed the connection");
+        try {
+            BinaryProtocol.Frame response;
+            while ((response = BinaryProtocol.readFrame(this.frameIn)) != null) {
+                StreamListener stream = this.streams.get(response.requestId);
+                if (stream != null) {
+                    if (response.opcode == BinaryProtocol.ERROR) {
+                        this.streams.remove(response.requestId);
+                        stream.onFailure(new IOException(BinaryProtocol.decodeError(response.payload)));
+                        continue;
+                    }
+                    if (response.opcode == BinaryProtocol.STREAM_END) {
+                        this.streams.remove(response.requestId);
+                    }
+                    stream.onFrame(response);
+                    continue;
+                }
+                CompletableFuture<ByteBuffer> request = this.inFlight.remove(response.requestId);
+                if (request == null) {
+                    this.err("Received response to unknown request " + response.requestId);
+                } else if (response.opcode == BinaryProtocol.ERROR) {
+                    request.completeExceptionally(new IOException(BinaryProtocol.decodeError(response.payload)));
+                } else {
+                    request.complete(response.payload);
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+        this.connectionFailure = failure;
+        for (Integer requestId : this.inFlight.keySet()) {
+            CompletableFuture<ByteBuffer> request = this.inFlight.remove(requestId);
+            if (request != null) {
+                request.completeExceptionally(failure);
+            }
+        }
+        for (Integer requestId : this.streams.keySet()) {
+            StreamListener stream = this.streams.remove(requestId);
+            if (stream != null) {
+                stream.onFailure(failure);
+            }
+        }
+    }
+
     protected void info(String msg) {
         System.out.println(this.id + ": " + msg);
     }
@@ -0,0 +1,126 @@
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is the compact form of a path: its first cell and then a move for every step,
+ * the moves are direction codes of 2 bits (UP, RIGHT, DOWN, LEFT) packed four to a byte.
+ *
+ * every step of a path in the matrix is to one of the 4 neighbors of a cell,
+ * so a path of k cells takes 8 + k / 4 bytes instead of k Index objects.
+ */
+public class CompactPath implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // the direction codes of the moves
+    static final int UP = 0;
+    static final int RIGHT = 1;
+    static final int DOWN = 2;
+    static final int LEFT = 3;
+
+    private final int startRow;
+    private final int startColumn;
+    private final int length; // the number of cells
+    private final byte[] moves;
+
+    // constructor
+    CompactPath(int startRow, int startColumn, int length, byte[] moves) {
+        this.startRow = startRow;
+        this.startColumn = startColumn;
+        this.length = length;
+        this.moves = moves;
+    }
+
+    /**
+     * this function encodes a path
+     * @param path - the path, every step is to a neighbor of the cell before it
+     * @return - the compact path, or null if path is null
+     * @throws IllegalArgumentException - if a step of the path is not to a neighbor
+     */
+    public static CompactPath of(List<Index> path) {
+        if (path == null) {
+            return null;
+        }
+        if (path.isEmpty()) {
+            return new CompactPath(0, 0, 0, new byte[0]);
+        }
+        byte[] moves = new byte[movesLength(path.size())];
+        Index previous = path.get(0);
+        for (int step = 1; step < path.size(); step++) {
+            Index current = path.get(step);
+            int code = directionOf(current.getRow() - previous.getRow(), current.getColumn() - previous.getColumn());
+            if (code < 0) {
+                throw new IllegalArgumentException(previous + " and " + current + " are not neighbors");
+            }
+            moves[(step - 1) >> 2] |= (byte) (code << (((step - 1) & 3) * 2));
+            previous = current;
+        }
+        return new CompactPath(path.get(0).getRow(), path.get(0).getColumn(), path.size(), moves);
+    }
+
+    // the bytes of the moves of a path of length cells
+    static int movesLength(int length) {
+        return Math.max(0, length - 1 + 3) >> 2;
+    }
+
+    // the code of a step, -1 if it is not to a neighbor
+    private static int directionOf(int rowDelta, int columnDelta) {
+        if (rowDelta == -1 && columnDelta == 0) return UP;
+        if (rowDelta == 0 && columnDelta == 1) return RIGHT;
+        if (rowDelta == 1 && columnDelta == 0) return DOWN;
+        if (rowDelta == 0 && columnDelta == -1) return LEFT;
+        return -1;
+    }
+
+    // getter - the number of cells of the path
+    public int size() {
+        return length;
+    }
+
+    // getter
+    public int getStartRow() {
+        return startRow;
+    }
+
+    // getter
+    public int getStartColumn() {
+        return startColumn;
+    }
+
+    /**
+     * @param step - a step of the path, 1..size-1
+     * @return - the direction code of the move to the cell of the step
+     */
+    public int getMove(int step) {
+        return (moves[(step - 1) >> 2] >> (((step - 1) & 3) * 2)) & 3;
+    }
+
+    /**
+     * this function decodes the path
+     * @param values - the matrix of the path, gives the values of the indices, null if they are not known (0)
+     * @return - the indices of the path, from start to end
+     */
+    public List<Index> toIndices(int[][] values) {
+        List<Index> path = new ArrayList<>(length);
+        int row = startRow;
+        int column = startColumn;
+        for (int step = 0; step < length; step++) {
+            if (step > 0) {
+                switch (getMove(step)) {
+                    case UP: row--; break;
+                    case RIGHT: column++; break;
+                    case DOWN: row++; break;
+                    default: column--; break;
+                }
+            }
+            path.add(new Index(row, column, values == null ? 0 : values[row][column]));
+        }
+        return path;
+    }
+
+    // the raw moves, for BinaryProtocol
+    byte[] moves() {
+        return moves;
+    }
+}
@@ -0,0 +1,226 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class finds the connected components (groups of ones) of a Matrix
+ * using the classic two-pass union-find labeling.
+ *
+ * first pass - every cell that holds one gets the label of its upper or left neighbor,
+ *              or a new provisional label if it has none, when both neighbors are labeled
+ *              their labels are recorded as equivalent in a UnionFind
+ * second pass - every provisional label is replaced by the root of its set
+ *               and the roots are renumbered 1..count
+ *
+ * every cell is visited twice, so each component is produced exactly once in O(rows*columns)
+ * the second pass also fills the size and the bounding box of every component (see ComponentLabels),
+ * so the submarines are counted from the same pass
+ *
+ * for very large matrices there is also a parallel mode that splits the matrix into row strips,
+ * labels the strips independently on a fork-join pool and stitches them along the shared borders
+ */
+public class ComponentLabeler {
+
+    private ComponentLabeler() {
+    }
+
+    /**
+     * @param value - the value of some cell
+     * @return - if the cell is part of a component (the value equals to one), any other value,
+     * e.g. a weight of getWeightedShortestPath, separates the components like a zero
+     */
+    static boolean isForeground(int value) {
+        return value == 1;
+    }
+
+    /**
+     * this function labels the connected components of the matrix
+     * @param matrix - the matrix we want to label
+     * @return - the label of every cell and the number of components
+     */
+    public static ComponentLabels label(Matrix matrix) {
+        CellStorage grid = matrix.cells;
+        int rows = matrix.getRows();
+        int columns = matrix.getColumns();
+        int[] labels = new int[rows * columns];
+        UnionFind equivalences = new UnionFind();
+        equivalences.makeSet(); // label 0 is kept for the background
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                int cell = i * columns + j;
+                if (!isForeground(grid.get(cell))) {
+                    continue;
+                }
+                int up = i > 0 ? labels[cell - columns] : 0;
+                int left = j > 0 ? labels[cell - 1] : 0;
+                if (up == 0 && left == 0) {
+                    labels[cell] = equivalences.makeSet();
+                } else if (up == 0) {
+                    labels[cell] = left;
+                } else if (left == 0 || left == up) {
+                    labels[cell] = up;
+                } else {
+                    labels[cell] = equivalences.union(up, left);
+                }
+            }
+        }
+
+        int[] finalLabels = new int[equivalences.size()];
+        int count = 0;
+        int[] boxes = new int[16 * ComponentLabels.STRIDE];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                int cell = i * columns + j;
+                if (labels[cell] == 0) {
+                    continue;
+                }
+                int root = equivalences.find(labels[cell]);
+                if (finalLabels[root] == 0) {
+                    finalLabels[root] = ++count;
+                    if ((count + 1) * ComponentLabels.STRIDE > boxes.length) {
+                        boxes = Arrays.copyOf(boxes, boxes.length * 2);
+                    }
+                    ComponentLabels.clearBox(boxes, count);
+                }
+                labels[cell] = finalLabels[root];
+                ComponentLabels.addToBox(boxes, labels[cell], i, j);
+            }
+        }
+        return new ComponentLabels(rows, columns, labels, count, boxes);
+    }
+
+    // below this number of cells the parallel mode is not worth its overhead
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * this function labels the connected components of the matrix in parallel
+     * the union-find is kept over cell ids (row * columns + column) so the strips never share provisional labels:
+     * 1. every strip unions its cells with their upper and left neighbors inside the strip (in parallel)
+     * 2. the first row of every strip is unioned with the last row of the strip above it
+     * 3. every root is numbered, the roots are the smallest cell of their component,
+     *    so numbering them row by row gives the same labels as the sequential scan (in parallel)
+     * 4. every cell takes the number of its root (in parallel)
+     * @param matrix - the matrix we want to label
+     * @param pool - the fork-join pool that runs the strips
+     * @return - the label of every cell and the number of components
+     */
+    public static ComponentLabels label(Matrix matrix, ForkJoinPool pool) {
+        CellStorage grid = matrix.cells;
+        int rows = matrix.getRows();
+        int columns = matrix.getColumns();
+        if ((long) rows * columns < PARALLEL_THRESHOLD || pool.getParallelism() == 1) {
+            return label(matrix);
+        }
+
+        // a few strips per worker, so the pool can balance strips that are slower than others
+        int stripRows = Math.max(1, (rows + pool.getParallelism() * 4 - 1) / (pool.getParallelism() * 4));
+        int strips = (rows + stripRows - 1) / stripRows;
+        UnionFind cells = new UnionFind(rows * columns);
+        int[] labels = new int[rows * columns];
+        int[] rootsPerStrip = new int[strips + 1];
+
+        pool.invoke(new StripsTask(strips, strip -> {
+            int firstRow = strip * stripRows;
+            int lastRow = Math.min(rows, firstRow + stripRows);
+            for (int i = firstRow; i < lastRow; i++) {
+                for (int j = 0; j < columns; j++) {
+                    int cell = i * columns + j;
+                    if (!isForeground(grid.get(cell))) {
+                        continue;
+                    }
+                    if (i > firstRow && isForeground(grid.get(cell - columns))) {
+                        cells.union(cell - columns, cell);
+                    }
+                    if (j > 0 && isForeground(grid.get(cell - 1))) {
+                        cells.union(cell - 1, cell);
+                    }
+                }
+            }
+        }));
+
+        for (int strip = 1; strip < strips; strip++) {
+            int first = strip * stripRows * columns;
+            for (int cell = first; cell < first + columns; cell++) {
+                if (isForeground(grid.get(cell)) && isForeground(grid.get(cell - columns))) {
+                    cells.union(cell - columns, cell);
+                }
+            }
+        }
+
+        pool.invoke(new StripsTask(strips, strip -> {
+            int firstRow = strip * stripRows;
+            int lastRow = Math.min(rows, firstRow + stripRows);
+            int roots = 0;
+            for (int cell = firstRow * columns; cell < lastRow * columns; cell++) {
+                if (isForeground(grid.get(cell)) && cells.isRoot(cell)) {
+                    roots++;
+                }
+            }
+            rootsPerStrip[strip + 1] = roots;
+        }));
+        for (int strip = 1; strip <= strips; strip++) {
+            rootsPerStrip[strip] += rootsPerStrip[strip - 1];
+        }
+
+        pool.invoke(new StripsTask(strips, strip -> {
+            int firstRow = strip * stripRows;
+            int lastRow = Math.min(rows, firstRow + stripRows);
+            int next = rootsPerStrip[strip];
+            for (int cell = firstRow * columns; cell < lastRow * columns; cell++) {
+                if (isForeground(grid.get(cell)) && cells.isRoot(cell)) {
+                    labels[cell] = ++next;
+                }
+            }
+        }));
+
+        pool.invoke(new StripsTask(strips, strip -> {
+            int firstRow = strip * stripRows;
+            int lastRow = Math.min(rows, firstRow + stripRows);
+            for (int cell = firstRow * columns; cell < lastRow * columns; cell++) {
+                if (isForeground(grid.get(cell))) {
+                    labels[cell] = labels[cells.root(cell)];
+                }
+            }
+        }));
+        return new ComponentLabels(rows, columns, labels, rootsPerStrip[strips]);
+    }
+
+    // the work of a single strip
+    private interface StripAction {
+        void apply(int strip);
+    }
+
+    /**
+     * This class runs a StripAction on every strip of a range of strips
+     * the range is split in halves recursively, so an idle worker steals a large half
+     * instead of queueing a task per strip up front
+     */
+    private static class StripsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final StripAction action;
+
+        StripsTask(int strips, StripAction action) {
+            this(0, strips, action);
+        }
+
+        private StripsTask(int from, int to, StripAction action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                action.apply(from);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new StripsTask(from, middle, action), new StripsTask(middle, to, action));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+import java.util.*;
+
+/**
+ * This class holds the result of labeling the connected components of a matrix:
+ * a label for every cell (0 for cells that are not part of any component)
+ * and the number of components that were found.
+ * the labels are numbered 1..count in the order in which the first cell
+ * of every component appears when scanning the matrix row by row.
+ *
+ * every component also has a box - its number of cells and its bounding box, so the number
+ * of submarines is counted in O(1) per component without building the components.
+ * the sequential labeling fills the boxes while it numbers the labels, otherwise they are
+ * filled by a single scan of the labels on first use.
+ */
+public class ComponentLabels {
+
+    // the fields of the box of every label, a box takes STRIDE ints
+    static final int SIZE = 0;
+    static final int MIN_ROW = 1;
+    static final int MAX_ROW = 2;
+    static final int MIN_COLUMN = 3;
+    static final int MAX_COLUMN = 4;
+    static final int STRIDE = 5;
+
+    private final int rows;
+    private final int columns;
+    private final int[] labels;
+    private final int count;
+    private int[] boxes; // by label, null until they are filled
+
+    // constructor
+    public ComponentLabels(int rows, int columns, int[] labels, int count) {
+        this(rows, columns, labels, count, null);
+    }
+
+    // constructor - boxes were filled by the labeling (see addToBox)
+    ComponentLabels(int rows, int columns, int[] labels, int count, int[] boxes) {
+        this.rows = rows;
+        this.columns = columns;
+        this.labels = labels;
+        this.count = count;
+        this.boxes = boxes;
+    }
+
+    /**
+     * this function adds a cell to the box of its label
+     * @param boxes - the boxes, a new label must have its box cleared by clearBox first
+     * @param label - the label of the cell
+     * @param row - the row of the cell
+     * @param column - the column of the cell
+     */
+    static void addToBox(int[] boxes, int label, int row, int column) {
+        int b = label * STRIDE;
+        boxes[b + SIZE]++;
+        boxes[b + MIN_ROW] = Math.min(boxes[b + MIN_ROW], row);
+        boxes[b + MAX_ROW] = Math.max(boxes[b + MAX_ROW], row);
+        boxes[b + MIN_COLUMN] = Math.min(boxes[b + MIN_COLUMN], column);
+        boxes[b + MAX_COLUMN] = Math.max(boxes[b + MAX_COLUMN], column);
+    }
+
+    // an empty box for a new label
+    static void clearBox(int[] boxes, int label) {
+        int b = label * STRIDE;
+        boxes[b + SIZE] = 0;
+        boxes[b + MIN_ROW] = Integer.MAX_VALUE;
+        boxes[b + MAX_ROW] = -1;
+        boxes[b + MIN_COLUMN] = Integer.MAX_VALUE;
+        boxes[b + MAX_COLUMN] = -1;
+    }
+
+    // the boxes of the labels, filled by a scan of the labels if the labeling has not filled them
+    private int[] boxes() {
+        if (this.boxes == null) {
+            int[] filled = new int[(this.count + 1) * STRIDE];
+            for (int label = 1; label <= this.count; label++) {
+                clearBox(filled, label);
+            }
+            for (int i = 0; i < this.rows; i++) {
+                for (int j = 0; j < this.columns; j++) {
+                    int label = this.labels[i * this.columns + j];
+                    if (label != 0) {
+                        addToBox(filled, label, i, j);
+                    }
+                }
+            }
+            this.boxes = filled;
+        }
+        return this.boxes;
+    }
+
+    /**
+     * @param label - a label, 1..count
+     * @return - if the component has more than one cell and fills its bounding box
+     */
+    public boolean isSubmarine(int label) {
+        int[] boxes = this.boxes();
+        int b = label * STRIDE;
+        long area = (long) (boxes[b + MAX_ROW] - boxes[b + MIN_ROW] + 1)
+                * (boxes[b + MAX_COLUMN] - boxes[b + MIN_COLUMN] + 1);
+        return boxes[b + SIZE] > 1 && boxes[b + SIZE] == area;
+    }
+
+    /**
+     * @return - the number of submarines, the same as Matrix.getNumOfSubs - 0 unless every component is a submarine
+     */
+    public int getNumOfSubs() {
+        for (int label = 1; label <= this.count; label++) {
+            if (!this.isSubmarine(label)) {
+                return 0;
+            }
+        }
+        return this.count;
+    }
+
+    // getter
+    public int getRows() {
+        return rows;
+    }
+
+    // getter
+    public int getColumns() {
+        return columns;
+    }
+
+    // getter
+    public int getCount() {
+        return count;
+    }
+
+    // getter
+    public int getLabel(int row, int column) {
+        return labels[row * columns + column];
+    }
+
+    /**
+     * this function builds the components out of the labels in one pass over the matrix
+     * every component is ordered by row and then by column
+     * @param matrix - the matrix that was labeled, used for the values of the indices
+     * @return - Set<Set<Index>>, a set of indices for every component
+     */
+    public Set<Set<Index>> toComponents(Matrix matrix) {
+        // sizing every set up front, so the sets are never rehashed while they grow
+        int[] boxes = this.boxes();
+        List<Set<Index>> components = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            components.add(new LinkedHashSet<>(boxes[i * STRIDE + SIZE] * 4 / 3 + 1));
+        }
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                int label = labels[i * columns + j];
+                if (label != 0) {
+                    components.get(label - 1).add(new Index(i, j, matrix.getValue(i, j)));
+                }
+            }
+        }
+        return new HashSet<>(components);
+    }
+}
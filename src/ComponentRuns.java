@@ -0,0 +1,131 @@
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class is the compact form of the connected components of a matrix:
+ * every component is a list of runs - a row and the first and last column of
+ * consecutive cells of the component in that row.
+ *
+ * a component of k cells in r rows takes at least 3 ints per row instead of k Index objects,
+ * so a big blob costs about 12 bytes per row instead of ~100 bytes per cell.
+ * the runs of a component are ordered by row and then by column, like the labels of ComponentLabels.
+ */
+public class ComponentRuns implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] offsets; // the first run of every component, and the number of runs at the end
+    private final int[] runs; // row, first column and last column of every run
+
+    // constructor
+    ComponentRuns(int[] offsets, int[] runs) {
+        this.offsets = offsets;
+        this.runs = runs;
+    }
+
+    /**
+     * this function collects the runs of the components out of the labels, in two scans of the labels
+     * @param labels - the labels of the matrix
+     * @return - the runs of every component, component i has the label i + 1
+     */
+    public static ComponentRuns of(ComponentLabels labels) {
+        int count = labels.getCount();
+        int[] offsets = new int[count + 1];
+        for (int i = 0; i < labels.getRows(); i++) {
+            int previous = 0;
+            for (int j = 0; j < labels.getColumns(); j++) {
+                int label = labels.getLabel(i, j);
+                if (label != 0 && label != previous) {
+                    offsets[label]++; // counted at label, shifted to the offsets below
+                }
+                previous = label;
+            }
+        }
+        for (int label = 1; label <= count; label++) {
+            offsets[label] += offsets[label - 1];
+        }
+        int[] runs = new int[3 * offsets[count]];
+        int[] next = new int[count];
+        System.arraycopy(offsets, 0, next, 0, count);
+        for (int i = 0; i < labels.getRows(); i++) {
+            for (int j = 0; j < labels.getColumns(); j++) {
+                int label = labels.getLabel(i, j);
+                if (label == 0) {
+                    continue;
+                }
+                int first = j;
+                while (j + 1 < labels.getColumns() && labels.getLabel(i, j + 1) == label) {
+                    j++;
+                }
+                int run = 3 * next[label - 1]++;
+                runs[run] = i;
+                runs[run + 1] = first;
+                runs[run + 2] = j;
+            }
+        }
+        return new ComponentRuns(offsets, runs);
+    }
+
+    // getter - the number of components
+    public int getCount() {
+        return offsets.length - 1;
+    }
+
+    // getter - the number of runs of all the components
+    public int getRunCount() {
+        return runs.length / 3;
+    }
+
+    /**
+     * @param component - the component, 0..count-1
+     * @return - the runs of the component, row, first column and last column of every run
+     */
+    public int[] getRuns(int component) {
+        int[] componentRuns = new int[3 * (offsets[component + 1] - offsets[component])];
+        System.arraycopy(runs, 3 * offsets[component], componentRuns, 0, componentRuns.length);
+        return componentRuns;
+    }
+
+    /**
+     * @param component - the component, 0..count-1
+     * @return - the number of cells of the component
+     */
+    public int getSize(int component) {
+        int size = 0;
+        for (int run = 3 * offsets[component]; run < 3 * offsets[component + 1]; run += 3) {
+            size += runs[run + 2] - runs[run + 1] + 1;
+        }
+        return size;
+    }
+
+    /**
+     * this function builds the components the way Matrix.getConnectedComponents does
+     * @return - Set<Set<Index>>, a set of indices for every component
+     */
+    public Set<Set<Index>> toComponents() {
+        List<Set<Index>> components = new ArrayList<>(this.getCount());
+        for (int component = 0; component < this.getCount(); component++) {
+            Set<Index> cells = new LinkedHashSet<>(this.getSize(component) * 4 / 3 + 1);
+            for (int run = 3 * offsets[component]; run < 3 * offsets[component + 1]; run += 3) {
+                for (int column = runs[run + 1]; column <= runs[run + 2]; column++) {
+                    cells.add(new Index(runs[run], column, 1)); // the components are made of ones
+                }
+            }
+            components.add(cells);
+        }
+        return new HashSet<>(components);
+    }
+
+    // the raw arrays, for BinaryProtocol
+    int[] offsets() {
+        return offsets;
+    }
+
+    int[] runs() {
+        return runs;
+    }
+}
@@ -0,0 +1,214 @@
+import java.util.Arrays;
+
+/**
+ * This class finds the connected components of a matrix in a single scan of its rows and hands every component
+ * to a sink as soon as it is complete, instead of building all the components before the first one is used.
+ *
+ * it works on runs (a row and the first and last column of consecutive ones) like ComponentRuns:
+ * every run of a row joins the open components of the runs of the previous row it touches, and a component
+ * that has no run in a row can never grow again, so it is sorted and handed to the sink right away.
+ * the scan holds a single row of the matrix and the runs of the open components, never the labels of the matrix,
+ * so it also works on a memory-mapped matrix that is too large for its components to be built on the heap.
+ */
+public class ComponentScanner {
+
+    /**
+     * receives the components of the scan
+     */
+    public interface Sink {
+        /**
+         * @param runs - the runs of a component, row, first column and last column of every run,
+         *             ordered by row and then by column
+         * @return - true to go on with the scan, false to stop it
+         * @throws Exception - stops the scan, scan throws it
+         */
+        boolean accept(int[] runs) throws Exception;
+    }
+
+    private final int columns;
+    private final UnionFind open = new UnionFind(); // the components that touch the previous row
+    private int[][] runs; // the runs of every open component, row, first column and last column
+    private int[] lengths; // the number of ints in runs of every open component
+    private int[][] nextRuns;
+    private int[] nextLengths;
+    private int[] previous; // the runs of the previous row, first column, last column and open component
+    private int previousCount;
+    private int[] current;
+    private int currentCount;
+    private final int[] renumbered;
+    private int emitted;
+    private boolean stopped;
+
+    // constructor
+    private ComponentScanner(int columns) {
+        this.columns = columns;
+        // a row has at most (columns + 1) / 2 runs, the previous row as many
+        int maxOpen = columns + 2;
+        this.runs = new int[maxOpen][];
+        this.lengths = new int[maxOpen];
+        this.nextRuns = new int[maxOpen][];
+        this.nextLengths = new int[maxOpen];
+        this.previous = new int[3 * maxOpen];
+        this.current = new int[3 * maxOpen];
+        this.renumbered = new int[maxOpen];
+    }
+
+    /**
+     * this function scans the matrix row after row and hands every component to the sink once it is complete
+     * the components arrive in the order they end - the component that ends first (its last row) comes first
+     * @param matrix - the matrix, e.g. a memory-mapped one
+     * @param sink - receives the components, it may stop the scan
+     * @return - the number of components the sink has received
+     * @throws Exception - if the sink has failed
+     */
+    public static int scan(Matrix matrix, Sink sink) throws Exception {
+        ComponentScanner scanner = new ComponentScanner(matrix.getColumns());
+        int[] row = new int[matrix.getColumns()];
+        for (int i = 0; i < matrix.getRows() && !scanner.stopped; i++) {
+            matrix.copyRow(i, row);
+            scanner.scanRow(i, row, sink);
+        }
+        // the components that reach the last row
+        for (int label = 0; label < scanner.open.size() && !scanner.stopped; label++) {
+            scanner.emit(label, sink);
+        }
+        return scanner.emitted;
+    }
+
+    /**
+     * joins the runs of a row to the open components, then hands over the components that ended
+     * @param i - the row
+     * @param row - the cells of the row
+     * @param sink - receives the components that ended
+     */
+    private void scanRow(int i, int[] row, Sink sink) throws Exception {
+        this.currentCount = 0;
+        int p = 0; // the first run of the previous row that may touch the next run of this row
+        for (int j = 0; j < this.columns; j++) {
+            if (!ComponentLabeler.isForeground(row[j])) {
+                continue;
+            }
+            int first = j;
+            while (j + 1 < this.columns && ComponentLabeler.isForeground(row[j + 1])) {
+                j++;
+            }
+            while (p < this.previousCount && this.previous[3 * p + 1] < first) {
+                p++;
+            }
+            int label = -1;
+            for (int q = p; q < this.previousCount && this.previous[3 * q] <= j; q++) {
+                int up = this.previous[3 * q + 2];
+                label = label < 0 ? this.open.find(up) : this.open.union(label, up);
+            }
+            if (label < 0) {
+                label = this.open.makeSet();
+                this.runs[label] = new int[12];
+                this.lengths[label] = 0;
+            }
+            this.append(label, i, first, j);
+            int c = 3 * this.currentCount++;
+            this.current[c] = first;
+            this.current[c + 1] = j;
+            this.current[c + 2] = label;
+        }
+
+        // the runs of merged components move to their root
+        int labels = this.open.size();
+        for (int label = 0; label < labels; label++) {
+            int root = this.open.find(label);
+            if (root != label) {
+                this.moveRuns(label, root);
+            }
+        }
+        // the components of this row are renumbered 0..k-1, the rest are complete
+        Arrays.fill(this.renumbered, 0, labels, -1);
+        int k = 0;
+        for (int c = 2; c < 3 * this.currentCount; c += 3) {
+            int root = this.open.find(this.current[c]);
+            if (this.renumbered[root] < 0) {
+                this.renumbered[root] = k;
+                this.nextRuns[k] = this.runs[root];
+                this.nextLengths[k] = this.lengths[root];
+                k++;
+            }
+            this.current[c] = this.renumbered[root];
+        }
+        for (int label = 0; label < labels && !this.stopped; label++) {
+            if (this.open.isRoot(label) && this.renumbered[label] < 0) {
+                this.emit(label, sink);
+            }
+        }
+        Arrays.fill(this.runs, 0, labels, null);
+        this.open.clear();
+        for (int label = 0; label < k; label++) {
+            this.open.makeSet();
+        }
+        int[][] swapRuns = this.runs;
+        this.runs = this.nextRuns;
+        this.nextRuns = swapRuns;
+        int[] swap = this.lengths;
+        this.lengths = this.nextLengths;
+        this.nextLengths = swap;
+        swap = this.previous;
+        this.previous = this.current;
+        this.current = swap;
+        this.previousCount = this.currentCount;
+    }
+
+    // adds a run to an open component
+    private void append(int label, int row, int first, int last) {
+        int length = this.lengths[label];
+        if (length + 3 > this.runs[label].length) {
+            this.runs[label] = Arrays.copyOf(this.runs[label], 2 * this.runs[label].length);
+        }
+        this.runs[label][length] = row;
+        this.runs[label][length + 1] = first;
+        this.runs[label][length + 2] = last;
+        this.lengths[label] = length + 3;
+    }
+
+    // moves the runs of a component that was merged into another one, the shorter list is copied
+    private void moveRuns(int from, int into) {
+        if (this.lengths[from] > this.lengths[into]) {
+            int[] swap = this.runs[from];
+            this.runs[from] = this.runs[into];
+            this.runs[into] = swap;
+            int swapLength = this.lengths[from];
+            this.lengths[from] = this.lengths[into];
+            this.lengths[into] = swapLength;
+        }
+        int length = this.lengths[into] + this.lengths[from];
+        if (length > this.runs[into].length) {
+            this.runs[into] = Arrays.copyOf(this.runs[into], Math.max(length, 2 * this.runs[into].length));
+        }
+        System.arraycopy(this.runs[from], 0, this.runs[into], this.lengths[into], this.lengths[from]);
+        this.lengths[into] = length;
+        this.runs[from] = null;
+        this.lengths[from] = 0;
+    }
+
+    /**
+     * sorts the runs of a complete component by row and column and hands them to the sink
+     * the runs of a component never overlap, so the first cell of a run and its width are a key of the run
+     */
+    private void emit(int label, Sink sink) throws Exception {
+        int[] componentRuns = this.runs[label];
+        int count = this.lengths[label] / 3;
+        long[] keys = new long[count];
+        for (int r = 0; r < count; r++) {
+            long cell = (long) componentRuns[3 * r] * this.columns + componentRuns[3 * r + 1];
+            keys[r] = cell << 31 | (componentRuns[3 * r + 2] - componentRuns[3 * r + 1]);
+        }
+        Arrays.sort(keys);
+        int[] sorted = new int[3 * count];
+        for (int r = 0; r < count; r++) {
+            long cell = keys[r] >>> 31;
+            sorted[3 * r] = (int) (cell / this.columns);
+            sorted[3 * r + 1] = (int) (cell % this.columns);
+            sorted[3 * r + 2] = sorted[3 * r + 1] + (int) (keys[r] & Integer.MAX_VALUE);
+        }
+        this.runs[label] = null;
+        this.emitted++;
+        this.stopped = !sink.accept(sorted);
+    }
+}
@@ -1,4 +1,6 @@
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -12,6 +14,8 @@ public class Demo {
     static int port = 8010;
     static int SIZE = 5;
     static int MAX_VALUE = 1000;
+    static boolean nonBlocking = false; // run the server with a selector, "nio" argument
+    static WireProtocol protocol = WireProtocol.OBJECTS; // "binary" argument for the binary protocol
 
 // create matrix for introduction of dijextra
     static int[][] originalMatrix1 = {
@@ -79,7 +83,7 @@ public class Demo {
      */
     private static void runClient() throws IOException {
         int[][] arr2d = randomOnesMatrix();
-        MatrixClient c1 = new MatrixClient(ipAddr, port, arr2d);
+        MatrixClient c1 = new MatrixClient(ipAddr, port, arr2d, protocol);
         c1.sendMatrix();
         c1.sendOnes();
         c1.getNumOfSubs();
@@ -88,25 +92,50 @@ public class Demo {
     }
 
     public static void main(String[] args) throws IOException {
+        nonBlocking = args.length > 0 && args[0].equals("nio");
+        boolean virtualThreads = args.length > 0 && args[0].equals("virtual"); // a virtual thread per client
+        if (nonBlocking) {
+            protocol = WireProtocol.FRAMED_OBJECTS;
+        } else if (args.length > 0 && args[0].equals("binary")) {
+            protocol = WireProtocol.BINARY;
+        }
+
         // create new server
-        TcpServer server = new TcpServer(port);
+        TcpServer server = new TcpServer(port,
+                virtualThreads ? ExecutionMode.VIRTUAL_THREADS : ExecutionMode.THREAD_POOL);
 
-        ThreadPoolExecutor tasksThreadPool = new ThreadPoolExecutor(10, 20, 2,
-                TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        // the algorithms of the matrices run on a fork-join pool, apart from the threads of the connections
+        ForkJoinPool analyticsPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+        // results of the matrices, shared by all the clients
+        MatrixResultCache cache = new MatrixResultCache(256L * 1024 * 1024);
 
         // command the server to start running
-        server.run(() -> new MatrixHandler(tasksThreadPool));
+        if (nonBlocking) {
+            server.runNonBlocking(() -> new MatrixHandler(analyticsPool, cache, null));
+        } else {
+            server.run(() -> new MatrixHandler(analyticsPool, cache, null));
+        }
 
         // creat threadPool for giving each client a different thread
         ThreadPoolExecutor threadPool = new ThreadPoolExecutor(10, 20, 2,
                 TimeUnit.SECONDS, new LinkedBlockingQueue<>());
 
         // create one Matrix client with hard coded matrix for introduce the Dijextra algorithm
-        MatrixClient c1 = new MatrixClient(ipAddr, port, originalMatrix1);
+        MatrixClient c1 = new MatrixClient(ipAddr, port, originalMatrix1, protocol);
         c1.sendMatrix();
-        c1.getNumOfSubs();
-        c1.getShortestPath(indices2);
-        c1.getEasiestPath(indices2);
+        if (protocol == WireProtocol.BINARY) {
+            // the three requests are in flight together, each one is printed when it is answered
+            CompletableFuture.allOf(
+                    c1.getNumOfSubsAsync().thenAccept(subs -> c1.info("Num subs: " + subs)),
+                    c1.getShortestPathAsync(indices2).thenAccept(path -> c1.info("The shortest path: " + path)),
+                    c1.getEasiestPathAsync(indices2).thenAccept(path -> c1.info("The easiest path: " + path))
+            ).join();
+        } else {
+            c1.getNumOfSubs();
+            c1.getShortestPath(indices2);
+            c1.getEasiestPath(indices2);
+        }
 
         int numClients = 2;
 
@@ -0,0 +1,600 @@
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * This class keeps the connected components and the number of submarines of a matrix up to date
+ * while its cells are changed in place, instead of labeling the whole matrix again after every change.
+ *
+ * every cell holds the id of its component (0 for background) and every component holds its size
+ * and bounding box, so the number of submarines (components of more than one cell that fill
+ * their bounding box) is kept as a counter.
+ *
+ * a change only touches the components around it:
+ * - a cell that joins a single component only updates the counters of that component,
+ *   a cell that joins several components labels the cells of the smaller ones with the id of the largest one
+ * - a cell that leaves a component searches from its neighbors in the component at once, one step each in turn,
+ *   until the searches meet (the component stays connected) or all of them but one run out of cells
+ *   (those pieces were split off and are labeled again), so a cell of a huge component costs about
+ *   the size of the smaller pieces, not the size of the component. if the bounding box may have shrunk,
+ *   its sides move inward while they hold no cell of the component
+ * - a patch of a region removes the components that touch the region and labels their cells again
+ *   with a flood fill, so it costs the size of those components
+ */
+public class DynamicComponents {
+
+    private final Matrix matrix; // changed in place
+    private final int[] labels;
+
+    // by component id, the ids of removed components are reused
+    private int[] size;
+    private int[] minRow;
+    private int[] maxRow;
+    private int[] minColumn;
+    private int[] maxColumn;
+    private int[] freeIds;
+    private int freeCount;
+    private int nextId = 1;
+
+    private int count;
+    private int rectangles;
+
+    private final int[] neighbors = new int[4];
+    private int[] queue; // the cells of the flood fill, allocated on first use
+    private int[] dirty; // the cells of the removed components, allocated on first use
+    private int keptSearch; // the search whose group keeps the label of the component, set by search
+
+    // the searches of a removed cell, allocated on first use
+    private int[] seen; // generation * 4 + search, of the cells the searches have reached
+    private int generation;
+    private final int[][] reached = new int[4][]; // the cells every search has reached, in order
+    private final int[] reachedCount = new int[4];
+    private final int[] head = new int[4];
+    private final int[] group = new int[4]; // searches that have met are in the same group
+
+    /**
+     * this function labels the matrix once, the changes that follow are incremental
+     * @param matrix - the matrix, on the heap, it is changed in place by set and patch
+     */
+    public DynamicComponents(Matrix matrix) {
+        if (matrix.isMapped()) {
+            throw new IllegalArgumentException("a mapped matrix is read-only");
+        }
+        this.matrix = matrix;
+        ComponentLabels initial = ComponentLabeler.label(matrix);
+        this.labels = new int[matrix.getRows() * matrix.getColumns()];
+        int capacity = Math.max(16, initial.getCount() + 1);
+        this.size = new int[capacity];
+        this.minRow = new int[capacity];
+        this.maxRow = new int[capacity];
+        this.minColumn = new int[capacity];
+        this.maxColumn = new int[capacity];
+        this.freeIds = new int[16];
+        for (int i = 0; i < initial.getCount(); i++) {
+            this.newComponent();
+        }
+        for (int cell = 0; cell < this.labels.length; cell++) {
+            int label = initial.getLabel(matrix.rowOf(cell), matrix.columnOf(cell));
+            if (label != 0) {
+                this.labels[cell] = label;
+                this.addToBox(label, cell);
+            }
+        }
+        for (int id = 1; id < this.nextId; id++) {
+            this.account(id, 1);
+        }
+    }
+
+    // getter
+    public Matrix getMatrix() {
+        return matrix;
+    }
+
+    // getter
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return - the number of submarines, the same as Matrix.getNumOfSubs - 0 unless every component is a submarine
+     */
+    public int getNumOfSubs() {
+        return this.rectangles == this.count ? this.rectangles : 0;
+    }
+
+    /**
+     * this function builds the components the way Matrix.getConnectedComponents does
+     * @return - the components of the current matrix
+     */
+    public Set<Set<Index>> toComponents() {
+        return this.toLabels().toComponents(this.matrix);
+    }
+
+    /**
+     * this function numbers the components the way ComponentLabeler does, in the order of their first cell
+     * @return - the labels of the current matrix
+     */
+    public ComponentLabels toLabels() {
+        int[] dense = new int[this.nextId];
+        int[] denseLabels = new int[this.labels.length];
+        int components = 0;
+        for (int cell = 0; cell < this.labels.length; cell++) {
+            int label = this.labels[cell];
+            if (label != 0) {
+                if (dense[label] == 0) {
+                    dense[label] = ++components;
+                }
+                denseLabels[cell] = dense[label];
+            }
+        }
+        return new ComponentLabels(this.matrix.getRows(), this.matrix.getColumns(), denseLabels, components);
+    }
+
+    /**
+     * this function changes a single cell
+     * @param row - the row of the cell
+     * @param column - the column of the cell
+     * @param value - the new value
+     */
+    public void set(int row, int column, int value) {
+        if (!this.matrix.contains(row, column)) {
+            throw new IllegalArgumentException("(" + row + "," + column + ") is out of the matrix");
+        }
+        int cell = this.matrix.cellId(row, column);
+        boolean was = ComponentLabeler.isForeground(this.matrix.getValue(cell));
+        boolean is = ComponentLabeler.isForeground(value);
+        if (was == is) {
+            this.matrix.setValue(cell, value); // the components stay the same
+            return;
+        }
+        int found = this.matrix.getNeighbors(cell, this.neighbors);
+        int label = 0;
+        int linked = 0; // neighbors in a component
+        boolean single = true;
+        for (int i = 0; i < found; i++) {
+            int neighborLabel = this.labels[this.neighbors[i]];
+            if (neighborLabel != 0) {
+                linked++;
+                single &= label == 0 || label == neighborLabel;
+                label = neighborLabel;
+            }
+        }
+        this.matrix.setValue(cell, value);
+        if (is && linked == 0) {
+            // a new component of a single cell
+            int id = this.newComponent();
+            this.labels[cell] = id;
+            this.addToBox(id, cell);
+            this.account(id, 1);
+        } else if (is && single) {
+            // joins a single component
+            this.account(label, -1);
+            this.labels[cell] = label;
+            this.addToBox(label, cell);
+            this.account(label, 1);
+        } else if (is) {
+            this.merge(cell, found);
+        } else if (linked > 0) {
+            this.remove(cell, found);
+        } else {
+            // the component of a single cell is gone
+            label = this.labels[cell];
+            this.account(label, -1);
+            this.freeComponent(label);
+            this.labels[cell] = 0;
+        }
+    }
+
+    /**
+     * this function changes a rectangular region of cells
+     * the components that touch the region are removed and their cells are labeled again together with the region
+     * @param top - the row of the upper left cell of the region
+     * @param left - the column of the upper left cell of the region
+     * @param values - the new values of the region, row after row
+     */
+    public void patch(int top, int left, int[][] values) {
+        int height = values.length;
+        int width = height == 0 ? 0 : values[0].length;
+        if (height == 0 || width == 0) {
+            return;
+        }
+        // compared by subtraction, top + height overflows for a top near Integer.MAX_VALUE
+        if (top < 0 || left < 0 || height > this.matrix.getRows() - top || width > this.matrix.getColumns() - left) {
+            throw new IllegalArgumentException("the region is out of the matrix");
+        }
+        for (int[] row : values) {
+            if (row.length != width) {
+                throw new IllegalArgumentException("all the rows of the region must have the same length");
+            }
+        }
+        this.allocate();
+
+        // 1. remove the components of the region and of the cells around it
+        int dirtyCount = 0;
+        int columns = this.matrix.getColumns();
+        int firstRow = Math.max(0, top - 1);
+        int lastRow = Math.min(this.matrix.getRows() - 1, top + height);
+        int firstColumn = Math.max(0, left - 1);
+        int lastColumn = Math.min(columns - 1, left + width);
+        for (int i = firstRow; i <= lastRow; i++) {
+            for (int j = firstColumn; j <= lastColumn; j++) {
+                if ((i < top || i >= top + height) && (j < left || j >= left + width)) {
+                    continue; // a corner of the ring is not a neighbor of the region
+                }
+                int cell = i * columns + j;
+                int label = this.labels[cell];
+                if (label != 0) {
+                    this.account(label, -1);
+                    this.freeComponent(label);
+                    dirtyCount = this.removeComponent(cell, label, dirtyCount);
+                }
+            }
+        }
+
+        // 2. change the region
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                this.matrix.setValue((top + i) * columns + left + j, values[i][j]);
+            }
+        }
+
+        // 3. label the cells of the removed components and of the region again
+        for (int d = 0; d < dirtyCount; d++) {
+            this.relabel(this.dirty[d]);
+        }
+        for (int i = top; i < top + height; i++) {
+            for (int j = left; j < left + width; j++) {
+                this.relabel(i * columns + j);
+            }
+        }
+    }
+
+    /**
+     * this function adds a cell that joins several components, the smaller components are merged into the largest one
+     * @param cell - the cell, neighbors holds its neighbors
+     * @param found - the number of neighbors
+     */
+    private void merge(int cell, int found) {
+        this.allocate();
+        int into = 0;
+        for (int i = 0; i < found; i++) {
+            int label = this.labels[this.neighbors[i]];
+            if (label != 0 && (into == 0 || this.size[label] > this.size[into])) {
+                into = label;
+            }
+        }
+        int[] starts = Arrays.copyOf(this.neighbors, found);
+        this.account(into, -1);
+        for (int start : starts) {
+            int label = this.labels[start];
+            if (label == 0 || label == into) {
+                continue;
+            }
+            this.account(label, -1);
+            this.freeComponent(label);
+            int head = 0;
+            int tail = 0;
+            this.labels[start] = into;
+            this.queue[tail++] = start;
+            while (head < tail) {
+                int current = this.queue[head++];
+                this.addToBox(into, current);
+                int count = this.matrix.getNeighbors(current, this.neighbors);
+                for (int i = 0; i < count; i++) {
+                    int neighbor = this.neighbors[i];
+                    if (this.labels[neighbor] == label) {
+                        this.labels[neighbor] = into;
+                        this.queue[tail++] = neighbor;
+                    }
+                }
+            }
+        }
+        this.labels[cell] = into;
+        this.addToBox(into, cell);
+        this.account(into, 1);
+    }
+
+    /**
+     * this function removes a cell that has neighbors in its component, the pieces that are split off get new ids
+     * @param cell - the cell, neighbors holds its neighbors
+     * @param found - the number of neighbors
+     */
+    private void remove(int cell, int found) {
+        int label = this.labels[cell];
+        boolean shrinks = this.onBox(label, cell);
+        int searches = 0;
+        for (int i = 0; i < found; i++) {
+            if (this.labels[this.neighbors[i]] == label) {
+                this.neighbors[searches++] = this.neighbors[i];
+            }
+        }
+        this.allocate();
+        if (searches > 1) {
+            this.search(cell, label, searches);
+        }
+        // the searches that were not in the group of the component are split off, they are labeled again
+        this.account(label, -1);
+        this.labels[cell] = 0;
+        this.size[label]--;
+        if (searches > 1) {
+            int kept = this.group[this.keptSearch];
+            for (int s = 0; s < searches; s++) {
+                if (this.group[s] != kept) {
+                    this.size[label] -= this.reachedCount[s];
+                    for (int i = 0; i < this.reachedCount[s]; i++) {
+                        shrinks |= this.onBox(label, this.reached[s][i]);
+                        this.labels[this.reached[s][i]] = 0;
+                    }
+                }
+            }
+            for (int s = 0; s < searches; s++) {
+                if (this.group[s] != kept && this.reachedCount[s] > 0) {
+                    this.relabel(this.reached[s][0]);
+                }
+            }
+        }
+        if (shrinks) {
+            this.shrinkBox(label);
+        }
+        this.account(label, 1);
+    }
+
+    // moves the sides of the bounding box of a component inward while they hold no cell of it
+    private void shrinkBox(int id) {
+        int columns = this.matrix.getColumns();
+        while (!this.holds(id, this.minRow[id] * columns + this.minColumn[id], 1, this.maxColumn[id] - this.minColumn[id])) {
+            this.minRow[id]++;
+        }
+        while (!this.holds(id, this.maxRow[id] * columns + this.minColumn[id], 1, this.maxColumn[id] - this.minColumn[id])) {
+            this.maxRow[id]--;
+        }
+        while (!this.holds(id, this.minRow[id] * columns + this.minColumn[id], columns, this.maxRow[id] - this.minRow[id])) {
+            this.minColumn[id]++;
+        }
+        while (!this.holds(id, this.minRow[id] * columns + this.maxColumn[id], columns, this.maxRow[id] - this.minRow[id])) {
+            this.maxColumn[id]--;
+        }
+    }
+
+    // true if one of the cells first, first + step, ..., first + steps * step belongs to the component
+    private boolean holds(int id, int first, int step, int steps) {
+        for (int i = 0, cell = first; i <= steps; i++, cell += step) {
+            if (this.labels[cell] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * this function searches from the neighbors of a removed cell at once, one step of every search in turn,
+     * keptSearch is set to a search of the piece that keeps the id of the component
+     * @param cell - the removed cell, neighbors holds the neighbors in its component
+     * @param label - the component
+     * @param searches - the number of neighbors in the component
+     */
+    private void search(int cell, int label, int searches) {
+        if (++this.generation > (Integer.MAX_VALUE >> 2)) {
+            Arrays.fill(this.seen, 0);
+            this.generation = 1;
+        }
+        int stamp = this.generation << 2;
+        for (int s = 0; s < searches; s++) {
+            if (this.reached[s] == null) {
+                this.reached[s] = new int[64];
+            }
+            this.group[s] = s;
+            this.head[s] = 0;
+            this.reachedCount[s] = 0;
+        }
+        for (int s = 0; s < searches; s++) {
+            int start = this.neighbors[s];
+            if (this.seen[start] >>> 2 == this.generation) {
+                this.join(this.seen[start] & 3, s, searches);
+            } else {
+                this.seen[start] = stamp | s;
+                this.reached[s][this.reachedCount[s]++] = start;
+            }
+        }
+        int[] around = new int[4];
+        while (true) {
+            // the search is over when the searches have met, or when a single group still has cells to search
+            int groups = 0;
+            int openGroups = 0;
+            for (int s = 0; s < searches; s++) {
+                if (this.group[s] == s) {
+                    groups++;
+                    if (this.isOpen(s, searches)) {
+                        openGroups++;
+                    }
+                }
+            }
+            if (groups == 1) {
+                this.keptSearch = 0;
+                return; // the component stays connected
+            }
+            if (openGroups <= 1) {
+                break;
+            }
+            for (int s = 0; s < searches; s++) {
+                if (this.head[s] == this.reachedCount[s]) {
+                    continue;
+                }
+                int current = this.reached[s][this.head[s]++];
+                int count = this.matrix.getNeighbors(current, around);
+                for (int i = 0; i < count; i++) {
+                    int neighbor = around[i];
+                    if (neighbor == cell || this.labels[neighbor] != label) {
+                        continue;
+                    }
+                    if (this.seen[neighbor] >>> 2 == this.generation) {
+                        this.join(this.seen[neighbor] & 3, s, searches);
+                    } else {
+                        this.seen[neighbor] = stamp | s;
+                        if (this.reachedCount[s] == this.reached[s].length) {
+                            this.reached[s] = Arrays.copyOf(this.reached[s], this.reachedCount[s] * 2);
+                        }
+                        this.reached[s][this.reachedCount[s]++] = neighbor;
+                    }
+                }
+            }
+        }
+        // every group but (at most) one has run out of cells - those are the pieces that were split off,
+        // the open group (or the largest one) keeps the label
+        int kept = -1;
+        long keptSize = -1;
+        for (int s = 0; s < searches; s++) {
+            if (this.group[s] != s) {
+                continue;
+            }
+            long groupSize = 0;
+            for (int t = 0; t < searches; t++) {
+                if (this.group[t] == s) {
+                    groupSize += this.reachedCount[t];
+                }
+            }
+            if (this.isOpen(s, searches)) {
+                groupSize = Long.MAX_VALUE;
+            }
+            if (groupSize > keptSize) {
+                keptSize = groupSize;
+                kept = s;
+            }
+        }
+        this.keptSearch = kept;
+    }
+
+    // true if a search of the group still has cells to search
+    private boolean isOpen(int group, int searches) {
+        for (int t = 0; t < searches; t++) {
+            if (this.group[t] == group && this.head[t] < this.reachedCount[t]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // merges the groups of two searches that have met
+    private void join(int first, int second, int searches) {
+        int from = Math.max(this.group[first], this.group[second]);
+        int into = Math.min(this.group[first], this.group[second]);
+        for (int s = 0; s < searches; s++) {
+            if (this.group[s] == from) {
+                this.group[s] = into;
+            }
+        }
+    }
+
+    // the arrays of the searches and the flood fills, by cell
+    private void allocate() {
+        if (this.queue == null) {
+            this.queue = new int[this.labels.length];
+            this.dirty = new int[this.labels.length];
+            this.seen = new int[this.labels.length];
+        }
+    }
+
+    // clears the labels of a component, its cells are added to dirty, returns the new number of dirty cells
+    private int removeComponent(int start, int label, int dirtyCount) {
+        int head = 0;
+        int tail = 0;
+        this.labels[start] = 0;
+        this.queue[tail++] = start;
+        while (head < tail) {
+            int cell = this.queue[head++];
+            this.dirty[dirtyCount++] = cell;
+            int found = this.matrix.getNeighbors(cell, this.neighbors);
+            for (int i = 0; i < found; i++) {
+                int neighbor = this.neighbors[i];
+                if (this.labels[neighbor] == label) {
+                    this.labels[neighbor] = 0;
+                    this.queue[tail++] = neighbor;
+                }
+            }
+        }
+        return dirtyCount;
+    }
+
+    // labels a new component from a cell that is part of a component but has no label
+    private void relabel(int start) {
+        if (this.labels[start] != 0 || !ComponentLabeler.isForeground(this.matrix.getValue(start))) {
+            return;
+        }
+        int id = this.newComponent();
+        int head = 0;
+        int tail = 0;
+        this.labels[start] = id;
+        this.queue[tail++] = start;
+        while (head < tail) {
+            int cell = this.queue[head++];
+            this.addToBox(id, cell);
+            int found = this.matrix.getNeighbors(cell, this.neighbors);
+            for (int i = 0; i < found; i++) {
+                int neighbor = this.neighbors[i];
+                if (this.labels[neighbor] == 0 && ComponentLabeler.isForeground(this.matrix.getValue(neighbor))) {
+                    this.labels[neighbor] = id;
+                    this.queue[tail++] = neighbor;
+                }
+            }
+        }
+        this.account(id, 1);
+    }
+
+    // a new empty component
+    private int newComponent() {
+        int id;
+        if (this.freeCount > 0) {
+            id = this.freeIds[--this.freeCount];
+        } else {
+            id = this.nextId++;
+            if (id == this.size.length) {
+                int capacity = this.size.length * 2;
+                this.size = Arrays.copyOf(this.size, capacity);
+                this.minRow = Arrays.copyOf(this.minRow, capacity);
+                this.maxRow = Arrays.copyOf(this.maxRow, capacity);
+                this.minColumn = Arrays.copyOf(this.minColumn, capacity);
+                this.maxColumn = Arrays.copyOf(this.maxColumn, capacity);
+            }
+        }
+        this.size[id] = 0;
+        this.minRow[id] = Integer.MAX_VALUE;
+        this.maxRow[id] = -1;
+        this.minColumn[id] = Integer.MAX_VALUE;
+        this.maxColumn[id] = -1;
+        this.count++;
+        return id;
+    }
+
+    private void freeComponent(int id) {
+        if (this.freeCount == this.freeIds.length) {
+            this.freeIds = Arrays.copyOf(this.freeIds, this.freeCount * 2);
+        }
+        this.freeIds[this.freeCount++] = id;
+        this.count--;
+    }
+
+    private void addToBox(int id, int cell) {
+        int row = this.matrix.rowOf(cell);
+        int column = this.matrix.columnOf(cell);
+        this.size[id]++;
+        this.minRow[id] = Math.min(this.minRow[id], row);
+        this.maxRow[id] = Math.max(this.maxRow[id], row);
+        this.minColumn[id] = Math.min(this.minColumn[id], column);
+        this.maxColumn[id] = Math.max(this.maxColumn[id], column);
+    }
+
+    // true if the cell is on the border of the bounding box of the component
+    private boolean onBox(int id, int cell) {
+        int row = this.matrix.rowOf(cell);
+        int column = this.matrix.columnOf(cell);
+        return row == this.minRow[id] || row == this.maxRow[id]
+                || column == this.minColumn[id] || column == this.maxColumn[id];
+    }
+
+    // adds (sign 1) or removes (sign -1) a component from the number of submarines
+    private void account(int id, int sign) {
+        long area = (long) (this.maxRow[id] - this.minRow[id] + 1) * (this.maxColumn[id] - this.minColumn[id] + 1);
+        if (this.size[id] > 1 && this.size[id] == area) {
+            this.rectangles += sign;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+/**
+ * The ways TcpServer.run can run the handlers of the clients
+ * THREAD_POOL - a fixed ThreadPoolExecutor, every connected client holds one of its threads until it disconnects
+ * VIRTUAL_THREADS - a new virtual thread for every client (Java 21+), a client that blocks on I/O
+ *                   or on a Promise releases its carrier thread for the other clients
+ */
+public enum ExecutionMode {
+    THREAD_POOL,
+    VIRTUAL_THREADS
+}
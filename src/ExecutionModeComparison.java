@@ -0,0 +1,91 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * this class compares the execution modes of TcpServer:
+ * for every mode it starts a server with MatrixHandler, connects many MatrixClients at the same time,
+ * and measures how long it takes until all of them have finished their requests.
+ * virtual threads need Java 21 - on an older JDK the VIRTUAL_THREADS server runs a platform thread per client,
+ * so that row measures the fallback and not virtual threads, it is marked in the results.
+ *
+ * usage: ExecutionModeComparison [clients] [matrix size]
+ **/
+public class ExecutionModeComparison {
+    static String ipAddr = "localhost";
+    static int firstPort = 8030;
+
+    /**
+     * this function runs all the clients against a server in the given mode
+     * @return - the time in milliseconds until all the clients have finished
+     */
+    private static long measure(ExecutionMode mode, int port, int clients, int size) throws InterruptedException {
+        TcpServer server = new TcpServer(port, mode);
+        ThreadPoolExecutor tasksThreadPool = new ThreadPoolExecutor(10, 20, 2,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        // no cache, every client pays for its matrix as with a server that sees different matrices
+        server.run(() -> new MatrixHandler(tasksThreadPool, new MatrixResultCache(0)));
+        Thread.sleep(500); // let the server start listening
+
+        Random random = new Random(size);
+        List<Thread> threads = new ArrayList<>(clients);
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            int[][] arr2d = new int[size][size];
+            for (int[] row : arr2d) {
+                for (int j = 0; j < size; j++) {
+                    row[j] = random.nextInt(4) == 0 ? 0 : 1;
+                }
+            }
+            arr2d[0][0] = 1;
+            arr2d[size - 1][size - 1] = 1;
+            Index[] indices = {new Index(0, 0, 1), new Index(size - 1, size - 1, 1)};
+            Thread thread = new Thread(() -> {
+                try {
+                    MatrixClient client = new MatrixClient(ipAddr, port, arr2d);
+                    client.sendMatrix();
+                    client.sendOnes();
+                    client.getNumOfSubs();
+                    client.getShortestPath(indices);
+                    client.getEasiestPath(indices);
+                    client.socket.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        // the clients and the server print every request, keep only the results
+        PrintStream results = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+
+        int port = firstPort;
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            long millis = measure(mode, port++, clients, size);
+            // the warning of the fallback went to the discarded System.err
+            String note = mode == ExecutionMode.VIRTUAL_THREADS && !TcpServer.hasVirtualThreads()
+                    ? " (no virtual threads before Java 21 - a platform thread per client)" : "";
+            results.printf("%-16s %d clients, %dx%d matrix: %d ms%s%n", mode, clients, size, size, millis, note);
+        }
+        // the servers are still listening
+        System.exit(0);
+    }
+}
@@ -0,0 +1,185 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * This class is a single client connection of the non-blocking server
+ * a frame is a 4 bytes length (big-endian) followed by that number of bytes.
+ *
+ * the selector thread reads whatever bytes have arrived and cuts them into complete request frames,
+ * the requests of a connection are handed to the compute pool one at a time (they share the handler's state),
+ * and every response is queued until the selector thread can write it.
+ * a connection that is waiting for bytes holds no thread at all.
+ *
+ * the selector stops reading a connection while its request is queued or handled, or its responses are not written,
+ * so a client that sends faster than it is answered waits in its own socket buffers instead of the server's memory.
+ * the buffer of a connection is small, it grows only as the bytes of a big frame arrive and shrinks after it.
+ */
+class FrameConnection {
+
+    static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+    private static final int INITIAL_BUFFER = 8 * 1024;
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final IFrameHandler handler;
+    private final String clientId;
+    private final Executor computePool;
+    private final Consumer<FrameConnection> onResponse; // wakes the selector thread up
+
+    private ByteBuffer inbound = ByteBuffer.allocate(INITIAL_BUFFER);
+    private final Queue<byte[]> requests = new ArrayDeque<>();   // guarded by this
+    private final Queue<ByteBuffer> responses = new ArrayDeque<>(); // guarded by this
+    private boolean busy = false;   // a request is being handled, guarded by this
+    private boolean failed = false; // the handler failed, the connection should be closed, guarded by this
+
+    // constructor
+    FrameConnection(SocketChannel channel, SelectionKey key, IFrameHandler handler, String clientId,
+                    Executor computePool, Consumer<FrameConnection> onResponse) {
+        this.channel = channel;
+        this.key = key;
+        this.handler = handler;
+        this.clientId = clientId;
+        this.computePool = computePool;
+        this.onResponse = onResponse;
+    }
+
+    /**
+     * this function is called by the selector thread when the channel has bytes to read,
+     * it reads them without blocking and dispatches the complete frames
+     */
+    void read() throws IOException {
+        if (this.channel.read(this.inbound) == -1) {
+            this.close();
+            return;
+        }
+        this.inbound.flip();
+        while (this.inbound.remaining() >= Integer.BYTES) {
+            int length = this.inbound.getInt(this.inbound.position());
+            if (length < 0 || length > MAX_FRAME_LENGTH) {
+                System.err.println("Server: Illegal frame length " + length + " from " + this.clientId);
+                this.close();
+                return;
+            }
+            if (this.inbound.remaining() < Integer.BYTES + length) {
+                break;
+            }
+            this.inbound.getInt();
+            byte[] request = new byte[length];
+            this.inbound.get(request);
+            synchronized (this) {
+                this.requests.add(request);
+            }
+        }
+        this.inbound.compact();
+        this.resizeInbound();
+        this.dispatchNext();
+        this.updateInterest();
+    }
+
+    // doubles a full buffer up to the size of the frame in it, or shrinks a big buffer back once its frame was read
+    private void resizeInbound() {
+        int capacity = this.inbound.capacity();
+        int needed = this.inbound.position() >= Integer.BYTES ? Integer.BYTES + this.inbound.getInt(0) : 0;
+        int wanted;
+        if (needed > capacity && !this.inbound.hasRemaining()) {
+            wanted = (int) Math.min(needed, 2L * capacity);
+        } else if (capacity > INITIAL_BUFFER && this.inbound.position() <= INITIAL_BUFFER && needed <= INITIAL_BUFFER) {
+            wanted = INITIAL_BUFFER;
+        } else {
+            return;
+        }
+        ByteBuffer resized = ByteBuffer.allocate(wanted);
+        this.inbound.flip();
+        resized.put(this.inbound);
+        this.inbound = resized;
+    }
+
+    // reads only while no request is queued or handled and no response waits, writes while responses wait
+    private void updateInterest() {
+        int ops;
+        synchronized (this) {
+            boolean idle = !this.busy && this.requests.isEmpty() && this.responses.isEmpty();
+            ops = (idle ? SelectionKey.OP_READ : 0) | (this.responses.isEmpty() ? 0 : SelectionKey.OP_WRITE);
+        }
+        if (this.key.isValid()) {
+            this.key.interestOps(ops);
+        }
+    }
+
+    // hands the next request to the compute pool, unless a request of this connection is still handled
+    private void dispatchNext() {
+        byte[] request;
+        synchronized (this) {
+            if (this.busy || this.failed || this.requests.isEmpty()) {
+                return;
+            }
+            this.busy = true;
+            request = this.requests.poll();
+        }
+        this.computePool.execute(() -> {
+            byte[] response = null;
+            boolean handled = true;
+            try {
+                response = this.handler.handleFrame(this.clientId, request);
+            } catch (Exception e) {
+                System.err.println("Server: " + e.getMessage());
+                handled = false;
+            }
+            synchronized (this) {
+                if (response != null) {
+                    ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + response.length);
+                    frame.putInt(response.length).put(response).flip();
+                    this.responses.add(frame);
+                }
+                this.failed = !handled;
+                this.busy = false;
+            }
+            this.onResponse.accept(this);
+            this.dispatchNext();
+        });
+    }
+
+    /**
+     * this function is called by the selector thread after a request was handled,
+     * it asks the selector for writing the responses, and for reading again once the connection is idle
+     */
+    void responseReady() throws IOException {
+        synchronized (this) {
+            if (this.failed) {
+                this.close();
+                return;
+            }
+        }
+        this.updateInterest();
+    }
+
+    /**
+     * this function is called by the selector thread when the channel can be written,
+     * it writes the queued responses until the channel can't take more bytes
+     */
+    void write() throws IOException {
+        synchronized (this) {
+            while (!this.responses.isEmpty()) {
+                ByteBuffer frame = this.responses.peek();
+                this.channel.write(frame);
+                if (frame.hasRemaining()) {
+                    return;
+                }
+                this.responses.poll();
+            }
+        }
+        this.updateInterest();
+    }
+
+    // closes the connection
+    void close() throws IOException {
+        this.key.cancel();
+        this.channel.close();
+    }
+}
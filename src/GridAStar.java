@@ -0,0 +1,122 @@
+import java.util.Arrays;
+
+/**
+ * This class implements the A* search over the cell ids of a TraversableMatrix
+ * the cells are ordered by f = g + h, where g is the cost of the path from the start cell
+ * and h is TraversableMatrix.estimateCostToTarget, so the search is pulled towards the end cell
+ * and on open grids it touches only the cells around the shortest path instead of everything closer than it.
+ *
+ * the estimate never overestimates and it changes by at most the cost of a single step,
+ * so a cell is settled when it is removed from the IndexedMinHeap, as in GridDijkstra.
+ * between cells with the same f the one with the bigger g (closer to the end) is taken first.
+ *
+ * like GridBFS the buffers are reused by the next searches of the same thread,
+ * use forCurrentThread for getting the instance of the current thread.
+ */
+public class GridAStar {
+
+    // the ties between equal f values are broken by g only while f * TIE_SCALE can't overflow
+    private static final long TIE_SCALE = 1L << 21;
+    private static final long MAX_SCALED_COST = Long.MAX_VALUE / TIE_SCALE;
+
+    private static final ThreadLocal<GridAStar> workspace = ThreadLocal.withInitial(GridAStar::new);
+
+    private final IndexedMinHeap heap = new IndexedMinHeap();
+    private long[] cost = new long[0];
+    private int[] parent = new int[0];
+    private int[] discovered = new int[0]; // cost and parent are valid if discovered equals generation
+    private int[] settled = new int[0];    // the cost is final if settled equals generation
+    private int generation = 0;
+    private final int[] neighbors = new int[4];
+    private int settledCells = 0;
+
+    // the buffers of the current thread
+    public static GridAStar forCurrentThread() {
+        return workspace.get();
+    }
+
+    // grows the buffers and starts a new generation of the stamps
+    private void prepare(int cells) {
+        if (this.cost.length < cells) {
+            this.cost = new long[cells];
+            this.parent = new int[cells];
+            this.discovered = new int[cells];
+            this.settled = new int[cells];
+            this.generation = 0;
+        }
+        this.heap.ensureCapacity(cells);
+        this.heap.clear();
+        this.settledCells = 0;
+        if (++this.generation == Integer.MAX_VALUE) {
+            Arrays.fill(this.discovered, 0);
+            Arrays.fill(this.settled, 0);
+            this.generation = 1;
+        }
+    }
+
+    // the number of cells the last search has settled
+    public int getSettledCells() {
+        return this.settledCells;
+    }
+
+    /**
+     * this function searches the cheapest path from the start cell to the end cell of the graph
+     * @param graph - the matrix with its start index, end index and cost model
+     * @return - the ids of the cells of the path from the start cell to the end cell, or null if there is no path
+     */
+    public int[] findPath(TraversableMatrix graph) {
+        Matrix matrix = graph.getMatrix();
+        int cells = matrix.getRows() * matrix.getColumns();
+        this.prepare(cells);
+        int source = graph.getOriginCell();
+        int target = graph.getTargetCell();
+        // the biggest possible cost of a path is every cell with the biggest cost
+        long maxCost = (long) cells * (graph.isWeighted() ? matrix.getMaxValue() : 1) * 2;
+        boolean breakTies = maxCost < MAX_SCALED_COST;
+
+        this.discover(graph, source, graph.getCost(source), -1, breakTies);
+        while (!this.heap.isEmpty()) {
+            int popped = this.heap.poll();
+            this.settled[popped] = this.generation;
+            this.settledCells++;
+            if (popped == target) {
+                return this.pathTo(target);
+            }
+            long poppedCost = this.cost[popped];
+            int count = graph.getReachableCells(popped, this.neighbors);
+            for (int i = 0; i < count; i++) {
+                int neighbor = this.neighbors[i];
+                if (this.settled[neighbor] == this.generation) {
+                    continue;
+                }
+                long newCost = poppedCost + graph.getCost(neighbor);
+                if (this.discovered[neighbor] != this.generation || newCost < this.cost[neighbor]) {
+                    this.discover(graph, neighbor, newCost, popped, breakTies);
+                }
+            }
+        }
+        return null;
+    }
+
+    private void discover(TraversableMatrix graph, int cell, long cellCost, int from, boolean breakTies) {
+        this.discovered[cell] = this.generation;
+        this.cost[cell] = cellCost;
+        this.parent[cell] = from;
+        long f = cellCost + graph.estimateCostToTarget(cell);
+        long key = breakTies ? f * TIE_SCALE + (TIE_SCALE - 1 - Math.min(cellCost, TIE_SCALE - 1)) : f;
+        this.heap.insertOrDecrease(cell, key);
+    }
+
+    // generates the path from the start cell of the last search to target
+    private int[] pathTo(int target) {
+        int length = 0;
+        for (int cell = target; cell != -1; cell = this.parent[cell]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int cell = target; cell != -1; cell = this.parent[cell]) {
+            path[--length] = cell;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,113 @@
+import java.util.Arrays;
+
+/**
+ * This class implements the BFS search directly over the cell ids of a Matrix
+ * a cell can be passed through if its value is not zero, as in TraversableMatrix.
+ *
+ * unlike BFS<T> it does not wrap the cells in Node objects:
+ * the working queue is an int array (every cell enters it at most once),
+ * a cell is visited if its stamp equals the generation of the current search,
+ * so starting a new search is only an increment of the generation,
+ * and the path is kept as the parent id of every discovered cell.
+ *
+ * the buffers grow to the size of the largest matrix searched and are reused by the next searches,
+ * use forCurrentThread for getting the instance of the current thread.
+ */
+public class GridBFS {
+
+    private static final ThreadLocal<GridBFS> workspace = ThreadLocal.withInitial(GridBFS::new);
+
+    private int[] queue = new int[0];
+    private int[] parent = new int[0];
+    private int[] visited = new int[0];
+    private int generation = 0;
+    private final int[] neighbors = new int[4];
+
+    // the buffers of the current thread
+    public static GridBFS forCurrentThread() {
+        return workspace.get();
+    }
+
+    // grows the buffers and starts a new generation of the visited stamps
+    private void prepare(int cells) {
+        if (this.queue.length < cells) {
+            this.queue = new int[cells];
+            this.parent = new int[cells];
+            this.visited = new int[cells];
+            this.generation = 0;
+        }
+        if (++this.generation == Integer.MAX_VALUE) {
+            Arrays.fill(this.visited, 0);
+            this.generation = 1;
+        }
+    }
+
+    // checks if the cell was discovered by the last search
+    public boolean isVisited(int cell) {
+        return this.visited[cell] == this.generation;
+    }
+
+    /**
+     * this function runs the BFS search from source
+     * until target is discovered or until all the reachable cells are discovered
+     * @param matrix - the matrix we search
+     * @param source - the id of the cell we start from
+     * @param target - the id of the cell we look for, or -1 for discovering every reachable cell
+     * @return - if target was discovered
+     */
+    public boolean search(Matrix matrix, int source, int target) {
+        this.prepare(matrix.getRows() * matrix.getColumns());
+        int head = 0;
+        int tail = 0;
+        this.queue[tail++] = source;
+        this.visited[source] = this.generation;
+        this.parent[source] = -1;
+        while (head < tail) {
+            int popped = this.queue[head++];
+            int count = matrix.getNeighbors(popped, this.neighbors);
+            for (int i = 0; i < count; i++) {
+                int neighbor = this.neighbors[i];
+                if (this.visited[neighbor] == this.generation || matrix.getValue(neighbor) == 0) {
+                    continue;
+                }
+                this.visited[neighbor] = this.generation;
+                this.parent[neighbor] = popped;
+                if (neighbor == target) {
+                    return true;
+                }
+                this.queue[tail++] = neighbor;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * this function generates the path from the source of the last search to target
+     * @param target - a cell that was discovered by the last search
+     * @return - the ids of the cells from source to target, or null if target was not discovered
+     */
+    public int[] pathTo(int target) {
+        if (!this.isVisited(target)) {
+            return null;
+        }
+        int length = 0;
+        for (int cell = target; cell != -1; cell = this.parent[cell]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int cell = target; cell != -1; cell = this.parent[cell]) {
+            path[--length] = cell;
+        }
+        return path;
+    }
+
+    /**
+     * @param matrix - the matrix we search
+     * @param source - the id of the start cell
+     * @param target - the id of the end cell
+     * @return - the ids of the cells of the shortest path from source to target, or null if there is no path
+     */
+    public int[] findPath(Matrix matrix, int source, int target) {
+        return this.search(matrix, source, target) ? this.pathTo(target) : null;
+    }
+}
@@ -0,0 +1,139 @@
+import java.util.Arrays;
+
+/**
+ * This class implements a bidirectional BFS search over the cell ids of a TraversableMatrix
+ * one BFS grows from the start cell and another one from the end cell (the graph is undirected),
+ * every round expands a whole level of the smaller frontier, and the search stops after the first
+ * level in which the two searches meet, taking the shortest of the meetings of that level.
+ * on open grids the two frontiers cover about two small circles instead of one big circle.
+ *
+ * like GridBFS the buffers are reused by the next searches of the same thread,
+ * use forCurrentThread for getting the instance of the current thread.
+ */
+public class GridBidirectionalBFS {
+
+    private static final ThreadLocal<GridBidirectionalBFS> workspace =
+            ThreadLocal.withInitial(GridBidirectionalBFS::new);
+
+    // index 0 is the search from the start cell, index 1 is the search from the end cell
+    private final int[][] queue = {new int[0], new int[0]};
+    private final int[][] parent = {new int[0], new int[0]};
+    private final int[][] depth = {new int[0], new int[0]};
+    private final int[][] visited = {new int[0], new int[0]};
+    private final int[] head = new int[2];
+    private final int[] tail = new int[2];
+    private int generation = 0;
+    private final int[] neighbors = new int[4];
+
+    // the buffers of the current thread
+    public static GridBidirectionalBFS forCurrentThread() {
+        return workspace.get();
+    }
+
+    // grows the buffers and starts a new generation of the visited stamps
+    private void prepare(int cells) {
+        if (this.queue[0].length < cells) {
+            for (int side = 0; side < 2; side++) {
+                this.queue[side] = new int[cells];
+                this.parent[side] = new int[cells];
+                this.depth[side] = new int[cells];
+                this.visited[side] = new int[cells];
+            }
+            this.generation = 0;
+        }
+        if (++this.generation == Integer.MAX_VALUE) {
+            Arrays.fill(this.visited[0], 0);
+            Arrays.fill(this.visited[1], 0);
+            this.generation = 1;
+        }
+    }
+
+    private void start(int side, int cell) {
+        this.head[side] = 0;
+        this.tail[side] = 0;
+        this.queue[side][this.tail[side]++] = cell;
+        this.visited[side][cell] = this.generation;
+        this.parent[side][cell] = -1;
+        this.depth[side][cell] = 0;
+    }
+
+    /**
+     * this function searches the shortest path from the start cell to the end cell of the graph
+     * @param graph - the matrix with its start index and end index
+     * @return - the ids of the cells of the path from the start cell to the end cell, or null if there is no path
+     */
+    public int[] findPath(TraversableMatrix graph) {
+        Matrix matrix = graph.getMatrix();
+        this.prepare(matrix.getRows() * matrix.getColumns());
+        int source = graph.getOriginCell();
+        int target = graph.getTargetCell();
+        if (source == target) {
+            return new int[]{source};
+        }
+        this.start(0, source);
+        this.start(1, target);
+
+        while (this.head[0] < this.tail[0] && this.head[1] < this.tail[1]) {
+            int side = this.tail[0] - this.head[0] <= this.tail[1] - this.head[1] ? 0 : 1;
+            int other = 1 - side;
+            int[] sideQueue = this.queue[side];
+            int[] sideParent = this.parent[side];
+            int[] sideDepth = this.depth[side];
+            int[] sideVisited = this.visited[side];
+            int[] otherDepth = this.depth[other];
+            int[] otherVisited = this.visited[other];
+            int bestLength = Integer.MAX_VALUE;
+            int bestFrom = -1;
+            int bestTo = -1;
+            int levelStart = this.head[side];
+            int levelEnd = this.tail[side];
+            int sideTail = levelEnd;
+            for (int position = levelStart; position < levelEnd; position++) {
+                int popped = sideQueue[position];
+                int nextDepth = sideDepth[popped] + 1;
+                int count = graph.getReachableCells(popped, this.neighbors);
+                for (int i = 0; i < count; i++) {
+                    int neighbor = this.neighbors[i];
+                    if (otherVisited[neighbor] == this.generation) {
+                        int length = nextDepth + otherDepth[neighbor];
+                        if (length < bestLength) {
+                            bestLength = length;
+                            bestFrom = popped;
+                            bestTo = neighbor;
+                        }
+                    } else if (sideVisited[neighbor] != this.generation) {
+                        sideVisited[neighbor] = this.generation;
+                        sideParent[neighbor] = popped;
+                        sideDepth[neighbor] = nextDepth;
+                        sideQueue[sideTail++] = neighbor;
+                    }
+                }
+            }
+            this.head[side] = levelEnd;
+            this.tail[side] = sideTail;
+            if (bestFrom != -1) {
+                return side == 0 ? this.joinPaths(bestFrom, bestTo) : this.joinPaths(bestTo, bestFrom);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * this function joins the path from the start cell to meetFrom with the path from meetTo to the end cell
+     * @param meetFrom - a cell discovered by the search from the start cell
+     * @param meetTo - a neighbor of meetFrom discovered by the search from the end cell
+     * @return - the ids of the cells of the path from the start cell to the end cell
+     */
+    private int[] joinPaths(int meetFrom, int meetTo) {
+        int[] path = new int[this.depth[0][meetFrom] + 1 + this.depth[1][meetTo] + 1];
+        int position = this.depth[0][meetFrom];
+        for (int cell = meetFrom; cell != -1; cell = this.parent[0][cell]) {
+            path[position--] = cell;
+        }
+        position = this.depth[0][meetFrom] + 1;
+        for (int cell = meetTo; cell != -1; cell = this.parent[1][cell]) {
+            path[position++] = cell;
+        }
+        return path;
+    }
+}
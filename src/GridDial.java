@@ -0,0 +1,130 @@
+import java.util.Arrays;
+
+/**
+ * This class implements Dial's algorithm (Dijkstra with a BucketQueue) over the cell ids of a Matrix
+ * it finds the same lightest paths as GridDijkstra, but since the values of the cells are small integers
+ * every cell is queued in O(1) instead of O(log n) - the bigger the values, the more empty buckets are scanned,
+ * so it searches only matrices whose biggest value is below MAX_WEIGHT. a negative value has no bucket,
+ * a matrix with negative values is rejected as well.
+ *
+ * like GridBFS the buffers are reused by the next searches of the same thread,
+ * use forCurrentThread for getting the instance of the current thread.
+ */
+public class GridDial {
+
+    // the cell values must be below MAX_WEIGHT, the bucket queue has a bucket for every weight up to the biggest value
+    public static final int MAX_WEIGHT = 4096;
+
+    private static final ThreadLocal<GridDial> workspace = ThreadLocal.withInitial(GridDial::new);
+
+    private final BucketQueue queue = new BucketQueue();
+    private long[] distance = new long[0];
+    private int[] parent = new int[0];
+    private int[] discovered = new int[0]; // distance and parent are valid if discovered equals generation
+    private int[] settled = new int[0];    // the distance is final if settled equals generation
+    private int generation = 0;
+    private final int[] neighbors = new int[4];
+
+    // the buffers of the current thread
+    public static GridDial forCurrentThread() {
+        return workspace.get();
+    }
+
+    // grows the buffers and starts a new generation of the stamps
+    private void prepare(int cells, int maxWeight) {
+        if (this.distance.length < cells) {
+            this.distance = new long[cells];
+            this.parent = new int[cells];
+            this.discovered = new int[cells];
+            this.settled = new int[cells];
+            this.generation = 0;
+        }
+        this.queue.reset(cells, Math.max(maxWeight, 1));
+        if (++this.generation == Integer.MAX_VALUE) {
+            Arrays.fill(this.discovered, 0);
+            Arrays.fill(this.settled, 0);
+            this.generation = 1;
+        }
+    }
+
+    /**
+     * this function runs Dial's search from source
+     * until target is settled or until all the reachable cells are settled
+     * @param matrix - the matrix we search
+     * @param source - the id of the cell we start from
+     * @param target - the id of the cell we look for, or -1 for settling every reachable cell
+     * @return - if target was reached
+     * @throws IllegalArgumentException - if the matrix has a negative value or a value of MAX_WEIGHT or more
+     */
+    public boolean search(Matrix matrix, int source, int target) {
+        if (matrix.getMinValue() < 0) {
+            throw new IllegalArgumentException("Dial's search needs values that are not negative, found "
+                    + matrix.getMinValue());
+        }
+        int maxWeight = matrix.getMaxValue();
+        if (maxWeight >= MAX_WEIGHT) {
+            throw new IllegalArgumentException("Dial's search needs values below " + MAX_WEIGHT + ", found "
+                    + maxWeight);
+        }
+        this.prepare(matrix.getRows() * matrix.getColumns(), maxWeight);
+        this.discover(source, matrix.getValue(source), -1);
+        while (!this.queue.isEmpty()) {
+            int popped = this.queue.poll();
+            this.settled[popped] = this.generation;
+            if (popped == target) {
+                return true;
+            }
+            long poppedDistance = this.distance[popped];
+            int count = matrix.getNeighbors(popped, this.neighbors);
+            for (int i = 0; i < count; i++) {
+                int neighbor = this.neighbors[i];
+                int value = matrix.getValue(neighbor);
+                if (value == 0 || this.settled[neighbor] == this.generation) {
+                    continue;
+                }
+                long newDistance = poppedDistance + value;
+                if (this.discovered[neighbor] != this.generation || newDistance < this.distance[neighbor]) {
+                    this.discover(neighbor, newDistance, popped);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void discover(int cell, long cellDistance, int from) {
+        this.discovered[cell] = this.generation;
+        this.distance[cell] = cellDistance;
+        this.parent[cell] = from;
+        this.queue.insertOrDecrease(cell, cellDistance);
+    }
+
+    /**
+     * this function generates the path from the source of the last search to target
+     * @param target - a cell that was settled by the last search
+     * @return - the ids of the cells from source to target, or null if target was not settled
+     */
+    public int[] pathTo(int target) {
+        if (this.settled[target] != this.generation) {
+            return null;
+        }
+        int length = 0;
+        for (int cell = target; cell != -1; cell = this.parent[cell]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int cell = target; cell != -1; cell = this.parent[cell]) {
+            path[--length] = cell;
+        }
+        return path;
+    }
+
+    /**
+     * @param matrix - the matrix we search
+     * @param source - the id of the start cell
+     * @param target - the id of the end cell
+     * @return - the ids of the cells of the lightest path from source to target, or null if there is no path
+     */
+    public int[] findPath(Matrix matrix, int source, int target) {
+        return this.search(matrix, source, target) ? this.pathTo(target) : null;
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.Arrays;
+
+/**
+ * This class implements the Dijkstra search directly over the cell ids of a Matrix
+ * the cost of a path is the sum of the values of its cells, and a cell with the value zero can't be passed through.
+ *
+ * unlike Dijkstra<T> the cells are ordered by the accumulated distance from the source (kept as long),
+ * a discovered cell whose distance improves gets its key decreased in an IndexedMinHeap instead of being added again,
+ * and a cell is settled only when it is removed from the heap, so the path it returns is the lightest one.
+ *
+ * like GridBFS the buffers are reused by the next searches of the same thread,
+ * use forCurrentThread for getting the instance of the current thread.
+ */
+public class GridDijkstra {
+
+    private static final ThreadLocal<GridDijkstra> workspace = ThreadLocal.withInitial(GridDijkstra::new);
+
+    private final IndexedMinHeap heap = new IndexedMinHeap();
+    private long[] distance = new long[0];
+    private int[] parent = new int[0];
+    private int[] discovered = new int[0]; // distance and parent are valid if discovered equals generation
+    private int[] settled = new int[0];    // the distance is final if settled equals generation
+    private int generation = 0;
+    private final int[] neighbors = new int[4];
+
+    // the buffers of the current thread
+    public static GridDijkstra forCurrentThread() {
+        return workspace.get();
+    }
+
+    // grows the buffers and starts a new generation of the stamps
+    private void prepare(int cells) {
+        if (this.distance.length < cells) {
+            this.distance = new long[cells];
+            this.parent = new int[cells];
+            this.discovered = new int[cells];
+            this.settled = new int[cells];
+            this.generation = 0;
+        }
+        this.heap.ensureCapacity(cells);
+        this.heap.clear();
+        if (++this.generation == Integer.MAX_VALUE) {
+            Arrays.fill(this.discovered, 0);
+            Arrays.fill(this.settled, 0);
+            this.generation = 1;
+        }
+    }
+
+    /**
+     * this function runs the Dijkstra search from source
+     * until target is settled or until all the reachable cells are settled
+     * @param matrix - the matrix we search
+     * @param source - the id of the cell we start from
+     * @param target - the id of the cell we look for, or -1 for settling every reachable cell
+     * @return - if target was reached
+     */
+    public boolean search(Matrix matrix, int source, int target) {
+        this.prepare(matrix.getRows() * matrix.getColumns());
+        this.discover(source, matrix.getValue(source), -1);
+        while (!this.heap.isEmpty()) {
+            int popped = this.heap.poll();
+            this.settled[popped] = this.generation;
+            if (popped == target) {
+                return true;
+            }
+            long poppedDistance = this.distance[popped];
+            int count = matrix.getNeighbors(popped, this.neighbors);
+            for (int i = 0; i < count; i++) {
+                int neighbor = this.neighbors[i];
+                int value = matrix.getValue(neighbor);
+                if (value == 0 || this.settled[neighbor] == this.generation) {
+                    continue;
+                }
+                long newDistance = poppedDistance + value;
+                if (this.discovered[neighbor] != this.generation || newDistance < this.distance[neighbor]) {
+                    this.discover(neighbor, newDistance, popped);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void discover(int cell, long cellDistance, int from) {
+        this.discovered[cell] = this.generation;
+        this.distance[cell] = cellDistance;
+        this.parent[cell] = from;
+        this.heap.insertOrDecrease(cell, cellDistance);
+    }
+
+    /**
+     * @param cell - some cell
+     * @return - the cost of the lightest path from the source of the last search to cell,
+     * or -1 if the last search did not settle it
+     */
+    public long distanceTo(int cell) {
+        return this.settled[cell] == this.generation ? this.distance[cell] : -1;
+    }
+
+    /**
+     * this function generates the path from the source of the last search to target
+     * @param target - a cell that was settled by the last search
+     * @return - the ids of the cells from source to target, or null if target was not settled
+     */
+    public int[] pathTo(int target) {
+        if (this.settled[target] != this.generation) {
+            return null;
+        }
+        int length = 0;
+        for (int cell = target; cell != -1; cell = this.parent[cell]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int cell = target; cell != -1; cell = this.parent[cell]) {
+            path[--length] = cell;
+        }
+        return path;
+    }
+
+    /**
+     * @param matrix - the matrix we search
+     * @param source - the id of the start cell
+     * @param target - the id of the end cell
+     * @return - the ids of the cells of the lightest path from source to target, or null if there is no path
+     */
+    public int[] findPath(Matrix matrix, int source, int target) {
+        return this.search(matrix, source, target) ? this.pathTo(target) : null;
+    }
+}
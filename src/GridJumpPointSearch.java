@@ -0,0 +1,212 @@
+import java.util.Arrays;
+
+/**
+ * This class implements Jump Point Search for the shortest path over the cell ids of a TraversableMatrix,
+ * when every cell that is not zero costs 1 and a cell has 4 neighbors (up, down, left and right).
+ *
+ * on such a grid many shortest paths are the same path in a different order of steps,
+ * JPS keeps a single canonical order - a path goes straight until it has a reason to turn:
+ * - moving horizontally, a cell is a jump point if a wall that ran along the path above or below it ends there
+ *   (the cell above/below is open while the cell behind it is blocked)
+ * - moving vertically, the same for walls on the left/right, and also every cell from which a horizontal
+ *   scan finds a jump point or the end cell
+ * only jump points enter the A* open list, the cells between them are only scanned,
+ * and the path is rebuilt by walking the straight segments between the jump points.
+ *
+ * like GridBFS the buffers are reused by the next searches of the same thread,
+ * use forCurrentThread for getting the instance of the current thread.
+ */
+public class GridJumpPointSearch {
+
+    private static final long TIE_SCALE = 1L << 21;
+
+    private static final ThreadLocal<GridJumpPointSearch> workspace =
+            ThreadLocal.withInitial(GridJumpPointSearch::new);
+
+    private final IndexedMinHeap heap = new IndexedMinHeap();
+    private int[] cost = new int[0];
+    private int[] parent = new int[0];
+    private int[] discovered = new int[0]; // cost and parent are valid if discovered equals generation
+    private int[] settled = new int[0];    // the cost is final if settled equals generation
+    private int generation = 0;
+    private int settledCells = 0;
+
+    // the matrix of the current search
+    private Matrix matrix;
+    private int rows;
+    private int columns;
+    private int target;
+
+    // the buffers of the current thread
+    public static GridJumpPointSearch forCurrentThread() {
+        return workspace.get();
+    }
+
+    // grows the buffers and starts a new generation of the stamps
+    private void prepare(int cells) {
+        if (this.cost.length < cells) {
+            this.cost = new int[cells];
+            this.parent = new int[cells];
+            this.discovered = new int[cells];
+            this.settled = new int[cells];
+            this.generation = 0;
+        }
+        this.heap.ensureCapacity(cells);
+        this.heap.clear();
+        this.settledCells = 0;
+        if (++this.generation == Integer.MAX_VALUE) {
+            Arrays.fill(this.discovered, 0);
+            Arrays.fill(this.settled, 0);
+            this.generation = 1;
+        }
+    }
+
+    // the number of jump points the last search has settled
+    public int getSettledCells() {
+        return this.settledCells;
+    }
+
+    /**
+     * this function searches the shortest path from the start cell to the end cell of the graph
+     * @param graph - the matrix with its start index and end index, every cell costs 1
+     * @return - the ids of the cells of the path from the start cell to the end cell, or null if there is no path
+     */
+    public int[] findPath(TraversableMatrix graph) {
+        this.matrix = graph.getMatrix();
+        this.rows = this.matrix.getRows();
+        this.columns = this.matrix.getColumns();
+        this.prepare(this.rows * this.columns);
+        int source = graph.getOriginCell();
+        this.target = graph.getTargetCell();
+        try {
+            this.discover(graph, source, 0, -1);
+            while (!this.heap.isEmpty()) {
+                int popped = this.heap.poll();
+                this.settled[popped] = this.generation;
+                this.settledCells++;
+                if (popped == this.target) {
+                    return this.pathTo(popped);
+                }
+                this.expand(graph, popped);
+            }
+            return null;
+        } finally {
+            this.matrix = null;
+        }
+    }
+
+    /**
+     * this function jumps from a jump point in every direction its arrival allows
+     * the start cell goes in all 4 directions, a cell reached horizontally goes on or turns up/down,
+     * and a cell reached vertically goes on or turns left/right
+     */
+    private void expand(TraversableMatrix graph, int cell) {
+        int row = cell / this.columns;
+        int column = cell - row * this.columns;
+        int from = this.parent[cell];
+        int rowStep = 0;
+        int columnStep = 0;
+        if (from != -1) {
+            rowStep = Integer.signum(row - from / this.columns);
+            columnStep = Integer.signum(column - from % this.columns);
+        }
+        if (columnStep == 0) {
+            this.jumpTo(graph, cell, this.jumpHorizontally(row, column + 1, 1));
+            this.jumpTo(graph, cell, this.jumpHorizontally(row, column - 1, -1));
+        }
+        if (rowStep == 0) {
+            this.jumpTo(graph, cell, this.jumpVertically(row + 1, column, 1));
+            this.jumpTo(graph, cell, this.jumpVertically(row - 1, column, -1));
+        }
+        if (columnStep != 0) {
+            this.jumpTo(graph, cell, this.jumpHorizontally(row, column + columnStep, columnStep));
+        }
+        if (rowStep != 0) {
+            this.jumpTo(graph, cell, this.jumpVertically(row + rowStep, column, rowStep));
+        }
+    }
+
+    // relaxes the jump point found from cell, the cost between them is the length of the straight segment
+    private void jumpTo(TraversableMatrix graph, int cell, int jumpPoint) {
+        if (jumpPoint == -1 || this.settled[jumpPoint] == this.generation) {
+            return;
+        }
+        int length = Math.abs(jumpPoint / this.columns - cell / this.columns)
+                + Math.abs(jumpPoint % this.columns - cell % this.columns);
+        int newCost = this.cost[cell] + length;
+        if (this.discovered[jumpPoint] != this.generation || newCost < this.cost[jumpPoint]) {
+            this.discover(graph, jumpPoint, newCost, cell);
+        }
+    }
+
+    private void discover(TraversableMatrix graph, int cell, int cellCost, int from) {
+        this.discovered[cell] = this.generation;
+        this.cost[cell] = cellCost;
+        this.parent[cell] = from;
+        long f = cellCost + graph.estimateCostToTarget(cell);
+        this.heap.insertOrDecrease(cell, f * TIE_SCALE + (TIE_SCALE - 1 - Math.min(cellCost, TIE_SCALE - 1)));
+    }
+
+    // checks if (row, column) is inside the matrix and is not zero
+    private boolean isOpen(int row, int column) {
+        return row >= 0 && row < this.rows && column >= 0 && column < this.columns
+                && this.matrix.getValue(row * this.columns + column) != 0;
+    }
+
+    /**
+     * this function scans horizontally from (row, column) until it finds a jump point
+     * @param step - 1 for moving right, -1 for moving left
+     * @return - the id of the jump point, or -1 if the scan hits a wall or the border first
+     */
+    private int jumpHorizontally(int row, int column, int step) {
+        while (this.isOpen(row, column)) {
+            int cell = row * this.columns + column;
+            if (cell == this.target
+                    || (this.isOpen(row - 1, column) && !this.isOpen(row - 1, column - step))
+                    || (this.isOpen(row + 1, column) && !this.isOpen(row + 1, column - step))) {
+                return cell;
+            }
+            column += step;
+        }
+        return -1;
+    }
+
+    /**
+     * this function scans vertically from (row, column) until it finds a jump point,
+     * at every cell it also scans horizontally to both sides
+     * @param step - 1 for moving down, -1 for moving up
+     * @return - the id of the jump point, or -1 if the scan hits a wall or the border first
+     */
+    private int jumpVertically(int row, int column, int step) {
+        while (this.isOpen(row, column)) {
+            int cell = row * this.columns + column;
+            if (cell == this.target
+                    || (this.isOpen(row, column - 1) && !this.isOpen(row - step, column - 1))
+                    || (this.isOpen(row, column + 1) && !this.isOpen(row - step, column + 1))
+                    || this.jumpHorizontally(row, column + 1, 1) != -1
+                    || this.jumpHorizontally(row, column - 1, -1) != -1) {
+                return cell;
+            }
+            row += step;
+        }
+        return -1;
+    }
+
+    // generates the path from the start cell to target by filling the segments between the jump points
+    private int[] pathTo(int target) {
+        int[] path = new int[this.cost[target] + 1];
+        int position = path.length - 1;
+        int cell = target;
+        while (this.parent[cell] != -1) {
+            int from = this.parent[cell];
+            int step = cell / this.columns == from / this.columns
+                    ? Integer.signum(cell - from) : Integer.signum(cell - from) * this.columns;
+            for (int walk = cell; walk != from; walk -= step) {
+                path[position--] = walk;
+            }
+            cell = from;
+        }
+        path[position] = cell;
+        return path;
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * This class keeps the cells of a Matrix in a single int[] on the heap
+ */
+public class HeapCells implements CellStorage {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] cells;
+
+    // constructor - the array is used as it is, not copied
+    public HeapCells(int[] cells) {
+        this.cells = cells;
+    }
+
+    @Override
+    public int size() {
+        return cells.length;
+    }
+
+    @Override
+    public int get(int cell) {
+        return cells[cell];
+    }
+
+    @Override
+    public void set(int cell, int value) {
+        cells[cell] = value;
+    }
+
+    @Override
+    public void copy(int from, int[] buffer, int offset, int length) {
+        System.arraycopy(cells, from, buffer, offset, length);
+    }
+
+    @Override
+    public boolean isMapped() {
+        return false;
+    }
+}
@@ -0,0 +1,15 @@
+import java.io.IOException;
+
+/**
+ * this interface defines the functionality required for handling a client request by request,
+ * every request arrives as a complete frame of bytes and its response is returned as a frame of bytes,
+ * so the server can read and write the frames without blocking a thread per client
+ */
+public interface IFrameHandler {
+    /**
+     * @param clientId - the client that sent the request
+     * @param request - the bytes of a single request
+     * @return - the bytes of the response, or null if the request has no response
+     */
+    public abstract byte[] handleFrame(String clientId, byte[] request) throws IOException, ClassNotFoundException;
+}
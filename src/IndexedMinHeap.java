@@ -0,0 +1,116 @@
+import java.util.Arrays;
+
+/**
+ * This class implements a binary min-heap of int ids (0..capacity-1) ordered by long keys
+ * it keeps the position of every id in the heap, so the key of an id that is already
+ * in the heap can be decreased in O(log n) instead of inserting it again (decrease-key).
+ */
+public class IndexedMinHeap {
+
+    private int[] heap = new int[0];       // the ids, heap[0] has the smallest key
+    private long[] keys = new long[0];     // keys[i] is the key of heap[i]
+    private int[] position = new int[0];   // the position of an id in heap, or -1 if it is not in the heap
+    private int size = 0;
+
+    // grows the heap so it can hold the ids 0..capacity-1
+    public void ensureCapacity(int capacity) {
+        if (this.position.length < capacity) {
+            this.heap = new int[capacity];
+            this.keys = new long[capacity];
+            this.position = new int[capacity];
+            Arrays.fill(this.position, -1);
+            this.size = 0;
+        }
+    }
+
+    // removes all the ids, costs only the number of ids that are left in the heap
+    public void clear() {
+        for (int i = 0; i < this.size; i++) {
+            this.position[this.heap[i]] = -1;
+        }
+        this.size = 0;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean contains(int id) {
+        return this.position[id] != -1;
+    }
+
+    // the smallest key in the heap
+    public long peekKey() {
+        return this.keys[0];
+    }
+
+    /**
+     * this function inserts id with key, or decreases its key if id is already in the heap
+     * @param id - some id
+     * @param key - the key of id
+     * @return - false if id is already in the heap with a key that is not bigger than key
+     */
+    public boolean insertOrDecrease(int id, long key) {
+        int i = this.position[id];
+        if (i == -1) {
+            i = this.size++;
+        } else if (this.keys[i] <= key) {
+            return false;
+        }
+        this.siftUp(i, id, key);
+        return true;
+    }
+
+    /**
+     * this function removes the id with the smallest key
+     * @return - the removed id
+     */
+    public int poll() {
+        int top = this.heap[0];
+        this.position[top] = -1;
+        if (--this.size > 0) {
+            this.siftDown(0, this.heap[this.size], this.keys[this.size]);
+        }
+        return top;
+    }
+
+    // moves the hole at i up until key fits, then puts id there
+    private void siftUp(int i, int id, long key) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (this.keys[parent] <= key) {
+                break;
+            }
+            this.place(i, this.heap[parent], this.keys[parent]);
+            i = parent;
+        }
+        this.place(i, id, key);
+    }
+
+    // moves the hole at i down until key fits, then puts id there
+    private void siftDown(int i, int id, long key) {
+        int half = this.size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < this.size && this.keys[child + 1] < this.keys[child]) {
+                child++;
+            }
+            if (key <= this.keys[child]) {
+                break;
+            }
+            this.place(i, this.heap[child], this.keys[child]);
+            i = child;
+        }
+        this.place(i, id, key);
+    }
+
+    private void place(int i, int id, long key) {
+        this.heap[i] = id;
+        this.keys[i] = key;
+        this.position[id] = i;
+    }
+}
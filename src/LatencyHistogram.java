@@ -0,0 +1,109 @@
+/**
+ * This class counts latencies in buckets of a fixed relative width, like HdrHistogram,
+ * so a percentile is read from the counts instead of keeping every latency or averaging them.
+ *
+ * the values below 2^SUB_BITS nanoseconds have a bucket each, above that every power of two is split
+ * into 2^(SUB_BITS - 1) buckets - a value is known within 1/64 (1.6%) of itself whatever its magnitude,
+ * and a histogram takes the same ~30KB for a microsecond or for a minute.
+ *
+ * a histogram is not thread-safe - every thread records into its own histogram and they are added at the end.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 7;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int HALF_COUNT = SUB_COUNT >> 1;
+
+    private final long[] counts = new long[(64 - SUB_BITS + 2) * HALF_COUNT];
+    private long count;
+    private long min = Long.MAX_VALUE;
+    private long max;
+    private long total;
+
+    /**
+     * this function counts a latency
+     * @param nanos - the latency in nanoseconds, a negative latency is counted as 0
+     */
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        this.counts[indexOf(nanos)]++;
+        this.count++;
+        this.min = Math.min(this.min, nanos);
+        this.max = Math.max(this.max, nanos);
+        this.total += nanos;
+    }
+
+    /**
+     * this function adds the latencies of another histogram to this one
+     * @param other - a histogram that is not recorded into any more
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < this.counts.length; i++) {
+            this.counts[i] += other.counts[i];
+        }
+        this.count += other.count;
+        this.min = Math.min(this.min, other.min);
+        this.max = Math.max(this.max, other.max);
+        this.total += other.total;
+    }
+
+    // the bucket of a value - the value itself below SUB_COUNT, else its top SUB_BITS bits and their shift
+    private static int indexOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        int top = (int) (value >>> shift); // HALF_COUNT..SUB_COUNT-1
+        return (shift + 1) * HALF_COUNT + top - HALF_COUNT;
+    }
+
+    // the highest value of a bucket
+    private static long highestOf(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = index / HALF_COUNT - 1;
+        long top = index % HALF_COUNT + HALF_COUNT;
+        return ((top + 1) << shift) - 1;
+    }
+
+    // getter - the number of latencies
+    public long getCount() {
+        return count;
+    }
+
+    // getter - the longest latency in nanoseconds, 0 if there are none
+    public long getMax() {
+        return max;
+    }
+
+    // getter - the shortest latency in nanoseconds, 0 if there are none
+    public long getMin() {
+        return this.count == 0 ? 0 : min;
+    }
+
+    // the average latency in nanoseconds, 0 if there are none
+    public double getMean() {
+        return this.count == 0 ? 0 : (double) this.total / this.count;
+    }
+
+    /**
+     * @param percentile - the percentile, 0..100, e.g. 99.9
+     * @return - the latency in nanoseconds that percentile percent of the latencies do not exceed
+     * (within the width of its bucket), 0 if there are none
+     */
+    public long getPercentile(double percentile) {
+        if (this.count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * this.count));
+        long seen = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            seen += this.counts[i];
+            if (seen >= rank) {
+                return Math.min(highestOf(i), this.max);
+            }
+        }
+        return this.max;
+    }
+}
@@ -0,0 +1,383 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * this class puts a TcpServer with MatrixHandler under load and measures its latencies:
+ * it starts the server, connects many MatrixClients at the same time, and every client sends a random mix
+ * of matrix, getOnes, getNumOfSubs, getShortestPath and getEasiestPath requests until the time is up.
+ * every latency is counted in a LatencyHistogram, so the report has the throughput and the p50/p99/p999
+ * of every operation - an average hides the few slow requests that the clients of a loaded server notice.
+ *
+ * every client waits for the answer of a request before it sends the next one (a closed loop), so the throughput
+ * is what the server sustains with that many clients, and a stalled server delays the next requests instead
+ * of showing in the latencies of requests that were never sent.
+ * with the binary protocol the requests are timed with the Async functions, an error answer is counted apart;
+ * the other protocols use the blocking functions, which print their results (to nowhere) and hide the errors.
+ *
+ * usage: LoadGenerator [name=value ...]
+ *   clients=100        the connected clients
+ *   seconds=20         how long the latencies are counted
+ *   warmup=5           seconds of requests before the counting starts (JIT, caches, connections)
+ *   size=50            the rows and the columns of the matrices
+ *   matrices=16        the different matrices the clients send, fewer matrices hit the result cache more often
+ *   density=75         the percent of ones in the matrices
+ *   protocol=binary    binary, objects or framed
+ *   mode=virtual       virtual, threads (TcpServer's ThreadPoolExecutor - only 10 clients are served at once)
+ *                      or nio (the non-blocking server, framed protocol)
+ *   port=8040
+ *   mix=matrix=1,getOnes=2,getNumOfSubs=4,getShortestPath=4,getEasiestPath=2   the weights of the operations
+ *
+ * e.g. LoadGenerator clients=1000 seconds=30 size=100 mix=getNumOfSubs=1,getShortestPath=1
+ **/
+public class LoadGenerator {
+    static String ipAddr = "localhost";
+
+    /**
+     * the requests the clients send
+     */
+    enum Operation {
+        MATRIX("matrix"),
+        GET_ONES("getOnes"),
+        GET_NUM_OF_SUBS("getNumOfSubs"),
+        GET_SHORTEST_PATH("getShortestPath"),
+        GET_EASIEST_PATH("getEasiestPath");
+
+        final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        static Operation of(String label) {
+            for (Operation operation : values()) {
+                if (operation.label.equals(label)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("unknown operation: " + label);
+        }
+    }
+
+    /**
+     * a client of the load, it runs in a thread of its own and counts its own latencies
+     * the histograms are read only after its thread has ended
+     */
+    private static class LoadClient implements Runnable {
+        private final int port;
+        private final WireProtocol protocol;
+        private final int[][][] matrices;
+        private final int[] weights; // the cumulative weights of Operation.values()
+        private final Random random;
+        private final long measureFrom; // System.nanoTime() when the counting starts
+        private final long end; // System.nanoTime() when the client stops
+        final LatencyHistogram connect = new LatencyHistogram(); // connection, handshake and first matrix
+        final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+        final long[] errors = new long[Operation.values().length];
+        long served; // System.nanoTime() when the first matrix was answered, 0 if never
+        IOException failure; // the client could not connect, or its connection failed before the end
+
+        // constructor
+        LoadClient(int port, WireProtocol protocol, int[][][] matrices, int[] weights, long seed,
+                   long measureFrom, long end) {
+            this.port = port;
+            this.protocol = protocol;
+            this.matrices = matrices;
+            this.weights = weights;
+            this.random = new Random(seed);
+            this.measureFrom = measureFrom;
+            this.end = end;
+            for (int i = 0; i < this.latencies.length; i++) {
+                this.latencies[i] = new LatencyHistogram();
+            }
+        }
+
+        @Override
+        public void run() {
+            MatrixClient client = null;
+            try {
+                long start = System.nanoTime();
+                client = new MatrixClient(ipAddr, port, this.nextMatrix(), this.protocol);
+                client.sendMatrix();
+                long now = System.nanoTime();
+                this.connect.record(now - start);
+                this.served = now;
+
+                Index[] indices = corners(client.arr2d);
+                while (now < this.end) {
+                    Operation operation = this.nextOperation();
+                    start = now;
+                    boolean answered = true;
+                    try {
+                        this.send(client, operation, indices);
+                    } catch (ExecutionException e) {
+                        answered = false;
+                        if (e.getCause() instanceof EOFException || e.getCause() instanceof SocketException) {
+                            this.errors[operation.ordinal()]++;
+                            this.failure = (IOException) e.getCause();
+                            return;
+                        }
+                    }
+                    now = System.nanoTime();
+                    if (start < this.measureFrom) {
+                        continue; // warm-up
+                    }
+                    if (answered) {
+                        this.latencies[operation.ordinal()].record(now - start);
+                    } else {
+                        this.errors[operation.ordinal()]++;
+                    }
+                }
+            } catch (IOException e) {
+                this.failure = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (client != null) {
+                    try {
+                        client.socket.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+
+        // sends a request and waits for its answer
+        private void send(MatrixClient client, Operation operation, Index[] indices)
+                throws ExecutionException, InterruptedException {
+            if (operation == Operation.MATRIX) {
+                client.arr2d = this.nextMatrix(); // all the matrices have the same size, the indices stay valid
+            }
+            if (this.protocol != WireProtocol.BINARY) {
+                switch (operation) {
+                    case MATRIX: client.sendMatrix(); break;
+                    case GET_ONES: client.sendOnes(); break;
+                    case GET_NUM_OF_SUBS: client.getNumOfSubs(); break;
+                    case GET_SHORTEST_PATH: client.getShortestPath(indices); break;
+                    case GET_EASIEST_PATH: client.getEasiestPath(indices); break;
+                }
+                return;
+            }
+            switch (operation) {
+                case MATRIX: client.sendMatrixAsync().get(); break;
+                case GET_ONES: client.getOnesAsync().get(); break;
+                case GET_NUM_OF_SUBS: client.getNumOfSubsAsync().get(); break;
+                case GET_SHORTEST_PATH: client.getShortestPathAsync(indices).get(); break;
+                case GET_EASIEST_PATH: client.getEasiestPathAsync(indices).get(); break;
+            }
+        }
+
+        private int[][] nextMatrix() {
+            return this.matrices[this.random.nextInt(this.matrices.length)];
+        }
+
+        private Operation nextOperation() {
+            int pick = this.random.nextInt(this.weights[this.weights.length - 1]);
+            int i = 0;
+            while (this.weights[i] <= pick) {
+                i++;
+            }
+            return Operation.values()[i];
+        }
+    }
+
+    // the path requests go from corner to corner, generate opens both corners
+    private static Index[] corners(int[][] arr2d) {
+        int last = arr2d.length - 1;
+        return new Index[]{new Index(0, 0, arr2d[0][0]), new Index(last, last, arr2d[last][last])};
+    }
+
+    /**
+     * @param count - the number of matrices
+     * @param size - the rows and the columns of every matrix
+     * @param density - the percent of ones
+     * @return - random matrices of 0 and 1, always the same ones for the same arguments
+     */
+    private static int[][][] generate(int count, int size, int density) {
+        Random random = new Random(size);
+        int[][][] matrices = new int[count][size][size];
+        for (int[][] arr2d : matrices) {
+            for (int[] row : arr2d) {
+                for (int j = 0; j < size; j++) {
+                    row[j] = random.nextInt(100) < density ? 1 : 0;
+                }
+            }
+            arr2d[0][0] = 1;
+            arr2d[size - 1][size - 1] = 1;
+        }
+        return matrices;
+    }
+
+    /**
+     * @param mix - operation=weight pairs separated by commas, e.g. getOnes=2,getNumOfSubs=1
+     * @return - the cumulative weights of Operation.values(), an operation that is not in the mix has weight 0
+     */
+    private static int[] parseMix(String mix) {
+        int[] weights = new int[Operation.values().length];
+        for (String pair : mix.split(",")) {
+            String[] parts = pair.trim().split("=");
+            if (parts.length != 2 || Integer.parseInt(parts[1]) < 0) {
+                throw new IllegalArgumentException("expected operation=weight in the mix: " + pair);
+            }
+            weights[Operation.of(parts[0]).ordinal()] = Integer.parseInt(parts[1]);
+        }
+        for (int i = 1; i < weights.length; i++) {
+            weights[i] += weights[i - 1];
+        }
+        if (weights[weights.length - 1] == 0) {
+            throw new IllegalArgumentException("the mix has no operation: " + mix);
+        }
+        return weights;
+    }
+
+    // the name=value arguments
+    private static Map<String, String> parseArguments(String[] args) {
+        Map<String, String> arguments = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("expected name=value: " + arg);
+            }
+            arguments.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        return arguments;
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+
+    private static void printRow(PrintStream out, String label, LatencyHistogram histogram, String opsPerSecond,
+                                 long errors) {
+        out.printf("%-16s %9d %10s %10s %10s %10s %10s %8d%n", label, histogram.getCount(), opsPerSecond,
+                millis(histogram.getPercentile(50)), millis(histogram.getPercentile(99)),
+                millis(histogram.getPercentile(99.9)), millis(histogram.getMax()), errors);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> arguments = parseArguments(args);
+        int clients = Integer.parseInt(arguments.getOrDefault("clients", "100"));
+        int seconds = Integer.parseInt(arguments.getOrDefault("seconds", "20"));
+        int warmup = Integer.parseInt(arguments.getOrDefault("warmup", "5"));
+        int size = Integer.parseInt(arguments.getOrDefault("size", "50"));
+        int matrixCount = Integer.parseInt(arguments.getOrDefault("matrices", "16"));
+        int density = Integer.parseInt(arguments.getOrDefault("density", "75"));
+        int port = Integer.parseInt(arguments.getOrDefault("port", "8040"));
+        int[] weights = parseMix(arguments.getOrDefault("mix",
+                "matrix=1,getOnes=2,getNumOfSubs=4,getShortestPath=4,getEasiestPath=2"));
+        String mode = arguments.getOrDefault("mode", "virtual");
+        WireProtocol protocol;
+        switch (arguments.getOrDefault("protocol", "binary")) {
+            case "binary": protocol = WireProtocol.BINARY; break;
+            case "objects": protocol = WireProtocol.OBJECTS; break;
+            case "framed": protocol = WireProtocol.FRAMED_OBJECTS; break;
+            default: throw new IllegalArgumentException("unknown protocol: " + arguments.get("protocol"));
+        }
+        if (mode.equals("nio")) {
+            protocol = WireProtocol.FRAMED_OBJECTS; // the non-blocking server reads framed objects only
+        } else if (!mode.equals("virtual") && !mode.equals("threads")) {
+            throw new IllegalArgumentException("unknown mode: " + mode);
+        }
+
+        // the clients and the server print every request, keep only the results
+        PrintStream results = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+
+        // the server of Demo
+        TcpServer server = new TcpServer(port,
+                mode.equals("threads") ? ExecutionMode.THREAD_POOL : ExecutionMode.VIRTUAL_THREADS);
+        ForkJoinPool analyticsPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        MatrixResultCache cache = new MatrixResultCache(256L * 1024 * 1024);
+        if (mode.equals("nio")) {
+            server.runNonBlocking(() -> new MatrixHandler(analyticsPool, cache, null));
+        } else {
+            server.run(() -> new MatrixHandler(analyticsPool, cache, null));
+        }
+        Thread.sleep(500); // let the server start listening
+
+        int[][][] matrices = generate(matrixCount, size, density);
+        long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmup);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+        List<LoadClient> loadClients = new ArrayList<>(clients);
+        List<Thread> threads = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            LoadClient loadClient = new LoadClient(port, protocol, matrices, weights, i, measureFrom, end);
+            Thread thread = new Thread(loadClient, "load-client-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            loadClients.add(loadClient);
+            threads.add(thread);
+        }
+        // a client that is still waiting long after the end is not served at all (e.g. beyond the threads of the pool)
+        long giveUp = end + TimeUnit.SECONDS.toNanos(10);
+        for (Thread thread : threads) {
+            thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(giveUp - System.nanoTime())));
+        }
+
+        LatencyHistogram connect = new LatencyHistogram();
+        LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+        long[] errors = new long[Operation.values().length];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        int late = 0;
+        int failed = 0;
+        IOException failure = null;
+        for (int i = 0; i < clients; i++) {
+            LoadClient loadClient = loadClients.get(i);
+            if (threads.get(i).isAlive()) {
+                late++;
+                continue;
+            }
+            if (loadClient.failure != null) {
+                failed++;
+                failure = loadClient.failure;
+            } else if (loadClient.served >= end) {
+                late++; // served only when the clients before it had finished
+            }
+            connect.add(loadClient.connect);
+            for (int o = 0; o < latencies.length; o++) {
+                latencies[o].add(loadClient.latencies[o]);
+                errors[o] += loadClient.errors[o];
+            }
+        }
+
+        results.printf("%d clients, %s protocol, %s server, %d %dx%d matrices with %d%% ones, %d s after %d s of warm-up%n",
+                clients, protocol, mode, matrixCount, size, size, density, seconds, warmup);
+        results.printf("%-16s %9s %10s %10s %10s %10s %10s %8s%n",
+                "operation", "count", "ops/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "errors");
+        LatencyHistogram total = new LatencyHistogram();
+        long totalErrors = 0;
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latencies[operation.ordinal()];
+            if (weights[operation.ordinal()] == (operation.ordinal() == 0 ? 0 : weights[operation.ordinal() - 1])) {
+                continue; // not in the mix
+            }
+            printRow(results, operation.label, histogram,
+                    String.format("%.1f", (double) histogram.getCount() / seconds), errors[operation.ordinal()]);
+            total.add(histogram);
+            totalErrors += errors[operation.ordinal()];
+        }
+        printRow(results, "total", total, String.format("%.1f", (double) total.getCount() / seconds), totalErrors);
+        printRow(results, "connect", connect, "-", 0);
+        if (late > 0) {
+            results.printf("%d clients were not served before the end%n", late);
+        }
+        if (failed > 0) {
+            results.printf("%d clients failed to connect or lost their connection, e.g. %s%n", failed, failure);
+        }
+        // the server and the clients that were never served are still running
+        System.exit(0);
+    }
+}
@@ -0,0 +1,90 @@
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class keeps the cells of a Matrix in a memory-mapped file, the cells stay in the page cache
+ * of the operating system and only the pages that are used are read, so the matrix can be larger than the heap
+ *
+ * a single MappedByteBuffer is limited to 2GB, so the file is mapped in segments of 2^28 cells (1GB)
+ * the mapping is read-only, a mapped matrix never changes the file it was loaded from
+ */
+public class MappedCells implements CellStorage {
+
+    private static final long serialVersionUID = 1L;
+    private static final int SEGMENT_SHIFT = 28;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    private final int size;
+    private final transient IntBuffer[] segments;
+    private final String source; // identifies the file and its version
+
+    /**
+     * this function maps the cells of a file
+     * @param channel - the file, opened for reading
+     * @param offset - the position of the first cell in the file
+     * @param size - the number of cells, little-endian ints
+     * @param source - identifies the contents of the file, e.g. its path, size and modification time
+     * @throws IOException - if the file could not be mapped
+     */
+    public MappedCells(FileChannel channel, long offset, int size, String source) throws IOException {
+        this.size = size;
+        this.source = source;
+        int count = (int) (((long) size + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        this.segments = new IntBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long first = (long) i << SEGMENT_SHIFT;
+            long length = Math.min(1L << SEGMENT_SHIFT, size - first);
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, offset + first * 4, length * 4);
+            this.segments[i] = segment.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+    }
+
+    // getter
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int get(int cell) {
+        return segments[cell >>> SEGMENT_SHIFT].get(cell & SEGMENT_MASK);
+    }
+
+    @Override
+    public void set(int cell, int value) {
+        throw new UnsupportedOperationException("a mapped matrix is read-only");
+    }
+
+    @Override
+    public void copy(int from, int[] buffer, int offset, int length) {
+        while (length > 0) {
+            IntBuffer segment = segments[from >>> SEGMENT_SHIFT];
+            int position = from & SEGMENT_MASK;
+            int chunk = Math.min(length, segment.limit() - position);
+            segment.get(position, buffer, offset, chunk);
+            from += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    @Override
+    public boolean isMapped() {
+        return true;
+    }
+
+    // a mapped matrix is sent as a matrix on the heap
+    private Object writeReplace() throws ObjectStreamException {
+        int[] cells = new int[size];
+        copy(0, cells, 0, size);
+        return new HeapCells(cells);
+    }
+}
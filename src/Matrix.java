@@ -1,9 +1,19 @@
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.function.Function;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
  * Index class implements Serializable
@@ -12,28 +22,219 @@ import java.util.stream.IntStream;
  */
 public class Matrix implements Serializable {
 
-    int[][] primitiveMatrix;
+    /*
+    the cells are stored row by row in a single CellStorage (an array on the heap or a memory-mapped file),
+    the cell in (row, column) is kept at row * columns + column - this position is the cell id
+     */
+    final int rows;
+    final int columns;
+    final CellStorage cells;
+    // computed on first use, a single immutable holder so that the threads that share the matrix see all of it
+    private transient volatile ValueRange valueRange;
+
+    /**
+     * This class holds the biggest value of a matrix, its smallest value and its smallest value above zero
+     */
+    private static final class ValueRange {
+        final int max;
+        final int min;
+        final int minPositive; // 0 if there is none
+
+        // constructor
+        ValueRange(int max, int min, int minPositive) {
+            this.max = max;
+            this.min = min;
+            this.minPositive = minPositive;
+        }
+
+        // the range after a cell changed from oldValue to newValue, or null if the matrix must be scanned again
+        ValueRange change(int oldValue, int newValue) {
+            // the old value may have been the only one on a bound
+            if (oldValue == max || oldValue == min || oldValue == minPositive) {
+                return null;
+            }
+            int newMinPositive = newValue > 0 && (minPositive == 0 || newValue < minPositive) ? newValue : minPositive;
+            return new ValueRange(Math.max(max, newValue), Math.min(min, newValue), newMinPositive);
+        }
+    }
 
     //constructor
     public Matrix(int[][] oArray){
-        List<int[]> list = new ArrayList<>();
-        for (int[] row : oArray) {
-            int[] clone = row.clone();
-            list.add(clone);
+        this.rows = oArray.length;
+        this.columns = this.rows == 0 ? 0 : oArray[0].length;
+        // the cell ids are ints, so a matrix has less than 2^31 cells
+        if ((long) this.rows * this.columns > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("a matrix of " + this.rows + "x" + this.columns + " has too many cells");
         }
-        primitiveMatrix = list.toArray(new int[0][]);
+        int[] cells = new int[this.rows * this.columns];
+        for (int i = 0; i < this.rows; i++) {
+            if (oArray[i].length != this.columns) {
+                throw new IllegalArgumentException("all the rows of the matrix must have the same length");
+            }
+            System.arraycopy(oArray[i], 0, cells, i * this.columns, this.columns);
+        }
+        this.cells = new HeapCells(cells);
+    }
+
+    // constructor - takes the cells as they are, row after row (e.g. a matrix read from the binary protocol)
+    Matrix(int rows, int columns, int[] cells) {
+        this(rows, columns, new HeapCells(cells));
+    }
+
+    // constructor - the cells are kept in the given storage
+    Matrix(int rows, int columns, CellStorage cells) {
+        if (rows < 0 || columns < 0 || cells.size() != (long) rows * columns) {
+            throw new IllegalArgumentException("the matrix must have rows * columns cells");
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.cells = cells;
+    }
+
+    /**
+     * this function maps a matrix file into memory, the cells are not copied to the heap
+     * the file holds rows and columns and then the cells row after row, all of them little-endian ints
+     * (the same layout as the MATRIX request of BinaryProtocol), see save
+     * @param file - the path of the file
+     * @return - a matrix that reads its cells from the file
+     * @throws IOException - if the file could not be read or is not a matrix file
+     */
+    public static Matrix map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < 8) {
+                throw new IOException(file + " is not a matrix file");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 8).order(ByteOrder.LITTLE_ENDIAN);
+            int rows = header.getInt();
+            int columns = header.getInt();
+            long size = (long) rows * columns;
+            // the cell ids are ints, so a matrix has less than 2^31 cells
+            if (rows < 0 || columns < 0 || size > Integer.MAX_VALUE || channel.size() != 8 + size * 4) {
+                throw new IOException(file + " is not a matrix file of " + rows + "x" + columns);
+            }
+            String source = file.toAbsolutePath() + "@" + Files.getLastModifiedTime(file).toMillis() + ":" + channel.size();
+            // the mapping stays valid after the channel is closed
+            return new Matrix(rows, columns, new MappedCells(channel, 8, (int) size, source));
+        }
+    }
+
+    /**
+     * this function writes the matrix to a file that map can read
+     * @param file - the path of the file
+     * @throws IOException - if the file could not be written
+     */
+    public void save(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(8, columns * 4)).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(rows).putInt(columns).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            int[] row = new int[columns];
+            for (int i = 0; i < rows; i++) {
+                cells.copy(i * columns, row, 0, columns);
+                buffer.clear();
+                buffer.asIntBuffer().put(row);
+                buffer.limit(columns * 4);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    // true if the cells of the matrix are kept in a memory-mapped file
+    public boolean isMapped() {
+        return cells.isMapped();
+    }
+
+    // getter - the identity of the file of a mapped matrix, or null
+    String getSource() {
+        return cells instanceof MappedCells ? ((MappedCells) cells).getSource() : null;
+    }
+
+    /**
+     * this function copies a row of the matrix
+     * @param row - the row
+     * @param buffer - an array of at least columns cells
+     */
+    public void copyRow(int row, int[] buffer) {
+        cells.copy(row * columns, buffer, 0, columns);
     }
 
     @Override
     public String toString(){
         StringBuilder stringBuilder = new StringBuilder();
-        for (int[] row : primitiveMatrix) {
+        int[] row = new int[columns];
+        for (int i = 0; i < rows; i++) {
+            copyRow(i, row);
             stringBuilder.append(Arrays.toString(row));
             stringBuilder.append("\n");
         }
         return stringBuilder.toString();
     }
 
+    // getter
+    public int getRows() {
+        return rows;
+    }
+    // getter
+    public int getColumns() {
+        return columns;
+    }
+
+    // the id of the cell in (row, column)
+    public int cellId(int row, int column) {
+        return row * columns + column;
+    }
+    // the row of a cell id
+    public int rowOf(int cell) {
+        return cell / columns;
+    }
+    // the column of a cell id
+    public int columnOf(int cell) {
+        return cell % columns;
+    }
+
+    // checks if (row, column) is inside the matrix
+    public boolean contains(int row, int column) {
+        return row >= 0 && row < rows && column >= 0 && column < columns;
+    }
+
+    /**
+     * this function writes the ids of the neighbors of a cell into a buffer supplied by the caller
+     * so it can be called for every cell of a traversal without allocating anything,
+     * the neighbors are ordered down, right, up, left - as in getNeighbors(Index)
+     * @param cell - the id of the cell we want to get he's neighbors
+     * @param buffer - an array of at least 4 cells that receives the neighbors ids
+     * @return - the number of neighbors that were written to the buffer
+     */
+    public int getNeighbors(int cell, int[] buffer) {
+        int row = cell / columns;
+        int column = cell - row * columns;
+        int count = 0;
+        if (row + 1 < rows) buffer[count++] = cell + columns;
+        if (column + 1 < columns) buffer[count++] = cell + 1;
+        if (row > 0) buffer[count++] = cell - columns;
+        if (column > 0) buffer[count++] = cell - 1;
+        return count;
+    }
+
+    /**
+     * same as getNeighbors(int, int[]) but the neighbors ids are passed to a callback
+     * @param cell - the id of the cell we want to get he's neighbors
+     * @param action - invoked with the id of every neighbor
+     */
+    public void forEachNeighbor(int cell, IntConsumer action) {
+        int row = cell / columns;
+        int column = cell - row * columns;
+        if (row + 1 < rows) action.accept(cell + columns);
+        if (column + 1 < columns) action.accept(cell + 1);
+        if (row > 0) action.accept(cell - columns);
+        if (column > 0) action.accept(cell - 1);
+    }
+
     /**
      * this function return collection of Index
      * the collection that this function returns is the neighbors of
@@ -42,29 +243,86 @@ public class Matrix implements Serializable {
      * @return - the neighbors of a specific Index
      */
     public Collection<Index> getNeighbors(final Index index) {
-        Collection<Index> list = new ArrayList<>();
-        int extracted = -1;
-        try{
-            extracted = primitiveMatrix[index.row+1][index.column];
-            list.add(new Index(index.row+1,index.column, extracted));
-        }catch (ArrayIndexOutOfBoundsException ignored){}
-        try{
-            extracted = primitiveMatrix[index.row][index.column+1];
-            list.add(new Index(index.row,index.column+1, extracted));
-        }catch (ArrayIndexOutOfBoundsException ignored){}
-        try{
-            extracted = primitiveMatrix[index.row-1][index.column];
-            list.add(new Index(index.row-1,index.column, extracted));
-        }catch (ArrayIndexOutOfBoundsException ignored){}
-        try{
-            extracted = primitiveMatrix[index.row][index.column-1];
-            list.add(new Index(index.row,index.column-1, extracted));
-        }catch (ArrayIndexOutOfBoundsException ignored){}
+        Collection<Index> list = new ArrayList<>(4);
+        int row = index.getRow();
+        int column = index.getColumn();
+        if (contains(row + 1, column)) list.add(new Index(row + 1, column, getValue(row + 1, column)));
+        if (contains(row, column + 1)) list.add(new Index(row, column + 1, getValue(row, column + 1)));
+        if (contains(row - 1, column)) list.add(new Index(row - 1, column, getValue(row - 1, column)));
+        if (contains(row, column - 1)) list.add(new Index(row, column - 1, getValue(row, column - 1)));
         return list;
     }
     // getter
     public int getValue(Index index) {
-        return primitiveMatrix[index.row][index.column];
+        return getValue(index.getRow(), index.getColumn());
+    }
+    // getter
+    public int getValue(int row, int column) {
+        return cells.get(row * columns + column);
+    }
+    // getter
+    public int getValue(int cell) {
+        return cells.get(cell);
+    }
+
+    /**
+     * this function changes a cell in place (see DynamicComponents, which keeps the components up to date)
+     * @param cell - the id of the cell
+     * @param value - the new value
+     */
+    void setValue(int cell, int value) {
+        int oldValue = cells.get(cell);
+        cells.set(cell, value);
+        ValueRange range = valueRange;
+        valueRange = range == null ? null : range.change(oldValue, value);
+    }
+
+    // a copy of the matrix on the heap, that can be changed without changing this matrix
+    Matrix copy() {
+        int[] copy = new int[cells.size()];
+        cells.copy(0, copy, 0, copy.length);
+        return new Matrix(rows, columns, copy);
+    }
+
+    // scans the matrix once for its biggest value, its smallest value and its smallest value that is above zero
+    private ValueRange getValueRange() {
+        ValueRange range = valueRange;
+        if (range == null) {
+            int max = 0;
+            int min = 0;
+            int minPositive = Integer.MAX_VALUE;
+            for (int cell = 0; cell < cells.size(); cell++) {
+                int value = cells.get(cell);
+                max = Math.max(max, value);
+                min = Math.min(min, value);
+                if (value > 0) {
+                    minPositive = Math.min(minPositive, value);
+                }
+            }
+            range = new ValueRange(max, min, minPositive == Integer.MAX_VALUE ? 0 : minPositive);
+            valueRange = range;
+        }
+        return range;
+    }
+
+    // the biggest value of the matrix
+    public int getMaxValue() {
+        return getValueRange().max;
+    }
+
+    // the smallest value of the matrix, or 0 if it has no negative value
+    public int getMinValue() {
+        return getValueRange().min;
+    }
+
+    // the smallest value of the matrix that is bigger than zero, or 0 if there is none
+    public int getMinPositiveValue() {
+        return getValueRange().minPositive;
+    }
+
+    // the Index of a cell id, holding the value of the cell
+    public Index toIndex(int cell) {
+        return new Index(rowOf(cell), columnOf(cell), cells.get(cell));
     }
 
     /**
@@ -78,55 +336,33 @@ public class Matrix implements Serializable {
                 .collect(Collectors.toList());
     }
 
-    private Set<Index> getSingleComponent(Index index) {
-        Set<Index> reachables = new HashSet<>(this.getReachables(index));
-        reachables.add(index);
-        while (true) {
-            Set<Index> newReachables = reachables.stream()
-                    .flatMap(idx -> this.getReachables(idx).stream())
-                    .filter(idx -> !reachables.contains(idx))
-                    .collect(Collectors.toSet());
-            if (newReachables.size() == 0) {
-                break;
-            }
-            reachables.addAll(newReachables);
-        }
-        return reachables.stream().sorted((o1, o2) ->
-                o1.getRow() - o2.getRow() == 0 ?
-                        o1.getColumn() - o2.getColumn() : o1.getRow() - o2.getRow())
-                .collect(Collectors.toCollection(LinkedHashSet::new));
+    /**
+     * this function searching for groups of ones in the matrix
+     * using the ComponentLabeler, that labels all the components in a single union-find scan
+     * so every component is produced exactly once
+     * only the cells that equal to one belong to a group (ComponentLabeler.isForeground) - the flood fill
+     * that was used before also started a group from every other non-zero cell, then such a cell came back
+     * as a group of its own and its neighbors of one, overlapping their group, it is not part of any group now
+     * @return - Set<Set<Index>> means list of lists' every list is a different group of ones in the matrix
+     */
+    public Set<Set<Index>> getConnectedComponents() {
+        return ComponentLabeler.label(this).toComponents(this);
     }
 
     /**
-     * this function searching for group of ones in the matrix
-     * using the getSingleComponent function that returns list of connected ones
-     * for every index the getConnectedComponents sends to getSingleComponent
+     * same as getConnectedComponents but the labeling runs in parallel,
+     * the matrix is split into row strips that are labeled on the pool and merged along their borders
+     * @param pool - the fork-join pool that runs the strips
      * @return - Set<Set<Index>> means list of lists' every list is a different group of ones in the matrix
      */
-    public Set<Set<Index>> getConnectedComponents(ThreadPoolExecutor threadPool) throws InterruptedException {
-        List<Promise<Set<Index>>> connectedComponents = new ArrayList<>();
-        for (int i = 0; i < this.primitiveMatrix.length; i++) {
-            for (int j = 0; j < this.primitiveMatrix[i].length; j++) {
-                Index index = new Index(i, j);
-                if (this.primitiveMatrix[i][j] != 0) {
-                    Promise<Set<Index>> promise = new Promise<>();
-                    threadPool.execute(() -> promise.setValue(this.getSingleComponent(index)));
-                    connectedComponents.add(promise);
-                }
-            }
-        }
-
-        Set<Set<Index>> set = new HashSet<>();
-        for (Promise<Set<Index>> x : connectedComponents) {
-            Set<Index> value = x.getValue();
-            set.add(value);
-        }
-        return set;
+    public Set<Set<Index>> getConnectedComponents(ForkJoinPool pool) {
+        return ComponentLabeler.label(this, pool).toComponents(this);
     }
 
     /**
      * validate that indices build from two indexes only
-     * and also validate that the start index and the end index are not the same index
+     * and also validate that both of them are inside the matrix,
+     * that the start index and the end index are not the same index
      * and there value is note zero
      * @param indices - contains start index and end index
      * @throws Exception
@@ -135,59 +371,181 @@ public class Matrix implements Serializable {
         if (indices.length != 2) {
             throw new Exception("indices does not match length = 2!");
         }
-        if (indices[0].equals(indices[1]) || indices[0].getValue() == 0 || indices[1].getValue() == 0) {
+        if (!contains(indices[0].getRow(), indices[0].getColumn()) || !contains(indices[1].getRow(), indices[1].getColumn())) {
+            throw new Exception("start index or end index is out of the matrix");
+        }
+        if (indices[0].equals(indices[1]) || getValue(indices[0]) == 0 || getValue(indices[1]) == 0) {
             throw new Exception("start index equals to end index or one of them equals to zero");
         }
     }
 
+    // the id of the cell of an index
+    private int cellId(Index index) {
+        return cellId(index.getRow(), index.getColumn());
+    }
+
+    /**
+     * this function turns a path of cell ids into a path of indices
+     * @param path - the ids of the cells of the path, may be null
+     * @return - List<Index> of the path, or null if path is null
+     */
+    List<Index> toIndexPath(int[] path) {
+        if (path == null) {
+            return null;
+        }
+        List<Index> indexPath = new ArrayList<>(path.length);
+        for (int cell : path) {
+            indexPath.add(toIndex(cell));
+        }
+        return indexPath;
+    }
+
     /**
      * @param indices - contains start index and end index
-     * @return -      * this function returns the shortest path using the BFS class
+     * @return -      * this function returns the shortest path using the GridBFS search over the cell ids
      * @throws Exception - when the indices are illegal
      */
     public List<Index> getShortestPath(Index[] indices) throws Exception {
+        return getShortestPath(indices, PathEngine.BFS);
+    }
+
+    /**
+     * @param indices - contains start index and end index
+     * @param engine - the engine that searches the path
+     * @return - this function returns the shortest path, when every cell that is not zero costs 1
+     * @throws Exception - when the indices are illegal
+     */
+    public List<Index> getShortestPath(Index[] indices, PathEngine engine) throws Exception {
         validateIndices(indices);
-        return new BFS<Index>().traverse(
-                new TraversableMatrix(this, indices[0], indices[1]));
+        if (engine == PathEngine.A_STAR) {
+            return toIndexPath(GridAStar.forCurrentThread().findPath(
+                    new TraversableMatrix(this, indices[0], indices[1], false)));
+        }
+        if (engine == PathEngine.BIDIRECTIONAL_BFS) {
+            return toIndexPath(GridBidirectionalBFS.forCurrentThread().findPath(
+                    new TraversableMatrix(this, indices[0], indices[1])));
+        }
+        if (engine == PathEngine.JUMP_POINT) {
+            return toIndexPath(GridJumpPointSearch.forCurrentThread().findPath(
+                    new TraversableMatrix(this, indices[0], indices[1], false)));
+        }
+        return toIndexPath(GridBFS.forCurrentThread().findPath(this, cellId(indices[0]), cellId(indices[1])));
+    }
+
+    /**
+     * the same as getShortestPathsAsync, but waits for the paths
+     * it must not be called from a thread of executor, the searches would wait behind it
+     * @param pairs - every pair contains start index and end index
+     * @param executor - runs the search of every group
+     * @return - the shortest path of every pair in the order of pairs, null for a pair without a path
+     * @throws Exception - if a pair is illegal (like getShortestPath), or a search has failed
+     */
+    public List<List<Index>> getShortestPaths(Index[][] pairs, Executor executor) throws Exception {
+        try {
+            return getShortestPathsAsync(pairs, executor).getValue();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * this function searches the shortest paths of many pairs of indices at once
+     * the pairs are grouped by their start index, and every group runs a single GridBFS search
+     * from its start index that answers all the end indices of the group,
+     * the groups are spread over the executor and the search that finishes last completes the promise,
+     * so no thread waits for the searches
+     * @param pairs - every pair contains start index and end index
+     * @param executor - runs the search of every group
+     * @return - the promise of the shortest path of every pair in the order of pairs, null for a pair without a path
+     * @throws Exception - if a pair is illegal (like getShortestPath)
+     */
+    public Promise<List<List<Index>>> getShortestPathsAsync(Index[][] pairs, Executor executor) throws Exception {
+        Map<Index, List<Integer>> pairsBySource = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i++) {
+            try {
+                validateIndices(pairs[i]);
+            } catch (Exception e) {
+                throw new Exception("pair " + i + ": " + e.getMessage(), e);
+            }
+            pairsBySource.computeIfAbsent(pairs[i][0], source -> new ArrayList<>()).add(i);
+        }
+
+        Promise<List<List<Index>>> paths = new Promise<>();
+        // every search sets the paths of its own pairs, the search that counts down to zero reads all of them
+        AtomicReferenceArray<List<Index>> found = new AtomicReferenceArray<>(pairs.length);
+        AtomicInteger searching = new AtomicInteger(pairsBySource.size());
+        if (pairsBySource.isEmpty()) {
+            paths.setValue(new ArrayList<>());
+        }
+        for (List<Integer> members : pairsBySource.values()) {
+            Runnable search = () -> {
+                try {
+                    GridBFS bfs = GridBFS.forCurrentThread();
+                    // a single end index can stop the search as soon as it is found
+                    int stopAt = members.size() == 1 ? cellId(pairs[members.get(0)][1]) : -1;
+                    bfs.search(this, cellId(pairs[members.get(0)][0]), stopAt);
+                    for (int i : members) {
+                        found.set(i, toIndexPath(bfs.pathTo(cellId(pairs[i][1]))));
+                    }
+                } catch (Throwable e) {
+                    // the first failure fails the promise, the later completions are ignored
+                    paths.setException(new Exception("the search of pair " + members.get(0) + " has failed", e));
+                    return;
+                }
+                if (searching.decrementAndGet() == 0) {
+                    List<List<Index>> ordered = new ArrayList<>(pairs.length);
+                    for (int i = 0; i < pairs.length; i++) {
+                        ordered.add(found.get(i));
+                    }
+                    paths.setValue(ordered);
+                }
+            };
+            try {
+                executor.execute(search);
+            } catch (Throwable e) {
+                paths.setException(e); // e.g. the executor was shut down
+                break;
+            }
+        }
+        return paths;
     }
 
+    // a component fills its bounding box - a single pass for the box, no rectangle of indices is built
     private boolean isRectangle(Collection<Index> component) {
-        List<Integer> columns = component.stream()
-                .map(Index::getColumn)
-                .sorted()
-                .collect(Collectors.toList())
-                ;
-        List<Integer> rows = component.stream()
-                .map(Index::getRow)
-                .sorted()
-                .collect(Collectors.toList())
-                ;
-        Index leftUpperIndex = new Index(columns.get(0), rows.get(0));
-        Index rightLowerIndex = new Index(columns.get(columns.size() - 1), rows.get(rows.size() - 1));
-        Collection<Index> rectangle = this.generateRectangle(leftUpperIndex, rightLowerIndex);
-        return component.size() == rectangle.size();
-    }
-
-    private Collection<Index> generateRectangle(Index start, Index end) {
-        return IntStream.rangeClosed(start.getRow(), end.getRow())
-                .mapToObj(i -> IntStream.rangeClosed(start.getColumn(), end.getColumn())
-                        .mapToObj(j -> new Index(i, j)))
-                .flatMap(Function.identity())
-                .collect(Collectors.toList())
-                ;
+        int minRow = Integer.MAX_VALUE;
+        int maxRow = -1;
+        int minColumn = Integer.MAX_VALUE;
+        int maxColumn = -1;
+        for (Index index : component) {
+            minRow = Math.min(minRow, index.getRow());
+            maxRow = Math.max(maxRow, index.getRow());
+            minColumn = Math.min(minColumn, index.getColumn());
+            maxColumn = Math.max(maxColumn, index.getColumn());
+        }
+        return component.size() == (long) (maxRow - minRow + 1) * (maxColumn - minColumn + 1);
     }
 
     /**
      * this function returns the number of submarines in the matrix
-     * first the function gets the connected Components
-     * second creates a Rectangle with the indexes of the connected Components we got
-     * using another function isRectangle
-     * and checks if the size of the rectangle equals to the size of validSubs
-     * if they are equal it returned the size of valid subs (number of subs) else return zero
+     * a submarine is a component of more than one cell that fills its bounding box,
+     * the labeling keeps the size and the bounding box of every component, so no component is built
+     * if every component is a submarine it returned the number of subs else return zero
      * @return - this function returns the number of submarines in the matrix
      */
-    public int getNumOfSubs(ThreadPoolExecutor threadPool) throws InterruptedException {
-        Collection<Set<Index>> connComponents = this.getConnectedComponents(threadPool);
+    public int getNumOfSubs() {
+        if (isMapped()) {
+            // the labels of a mapped matrix may not fit in the heap, the components are only counted
+            return StreamingLabeler.scan(this).getNumOfSubs();
+        }
+        return ComponentLabeler.label(this).getNumOfSubs();
+    }
+
+    /**
+     * the same as getNumOfSubs, for the connected components of the matrix that were computed already
+     * @param connComponents - the connected components of this matrix
+     * @return - the number of submarines in the matrix
+     */
+    public int getNumOfSubs(Collection<Set<Index>> connComponents) {
         Collection<Set<Index>> validSubs = connComponents.stream()
                 .filter(c -> c.size() > 1 && this.isRectangle(c))
                 .collect(Collectors.toList());
@@ -197,12 +555,38 @@ public class Matrix implements Serializable {
     /**
      *
      * @param indices - contains start index and end index
-     * @return - this function returned the Weighted Shortest Path using Dijextra class
+     * @return - this function returned the Weighted Shortest Path using the engine picked by WeightedPathEngine.AUTO,
+     * the weight of a path is the sum of the values of its cells
      * @throws Exception if indices id illegal
      */
     public List<Index> getWeightedShortestPath(Index[] indices) throws Exception {
+        return getWeightedShortestPath(indices, WeightedPathEngine.AUTO);
+    }
+
+    /**
+     *
+     * @param indices - contains start index and end index
+     * @param engine - the engine that searches the path
+     * @return - this function returned the Weighted Shortest Path,
+     * the weight of a path is the sum of the values of its cells
+     * @throws Exception if indices id illegal
+     */
+    public List<Index> getWeightedShortestPath(Index[] indices, WeightedPathEngine engine) throws Exception {
         validateIndices(indices);
-        return new Dijkstra<Index>().traverse(
-                new TraversableMatrix(this, indices[0], indices[1]));
+        if (engine == WeightedPathEngine.AUTO) {
+            // the buckets of Dial's queue need small weights that are not negative
+            engine = getMinValue() >= 0 && getMaxValue() < GridDial.MAX_WEIGHT ? WeightedPathEngine.BUCKET_QUEUE
+                    : WeightedPathEngine.HEAP;
+        }
+        int source = cellId(indices[0]);
+        int target = cellId(indices[1]);
+        if (engine == WeightedPathEngine.A_STAR) {
+            return toIndexPath(GridAStar.forCurrentThread().findPath(
+                    new TraversableMatrix(this, indices[0], indices[1], true)));
+        }
+        if (engine == WeightedPathEngine.BUCKET_QUEUE) {
+            return toIndexPath(GridDial.forCurrentThread().findPath(this, source, target));
+        }
+        return toIndexPath(GridDijkstra.forCurrentThread().findPath(this, source, target));
     }
 }
@@ -1,14 +1,46 @@
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * this class is the "real" clients in this program
+ *
+ * the functions that end with Async need the binary protocol - they send the request and return at once,
+ * so a client can keep many requests in flight on its connection, e.g.
+ *
+ * CompletableFuture<Integer> subs = client.getNumOfSubsAsync();
+ * CompletableFuture<List<Index>> path = client.getShortestPathAsync(indices);
+ *
+ * costs a single round trip instead of two
+ *
+ * with setCompactResults(true) the server answers getOnes with ComponentRuns and the paths with CompactPath,
+ * which the client expands back, so a big component or a long path does not cost an object per cell on the wire
+ *
+ * getOnesStream returns the components one by one while the server still finds them, e.g.
+ *
+ * try (Stream<Set<Index>> ones = client.getOnesStream(64)) {
+ *     ones.forEach(component -> ...);
+ * }
+ *
+ * the server sends at most window components ahead of the client, so neither side holds all of them
  */
 public class MatrixClient extends Client {
 
     int[][] arr2d;
+    boolean loaded; // the matrix of the session was loaded from a file of the server, not sent from arr2d
+    boolean compactResults; // the server answers in the compact forms
 
     // constructor
     public MatrixClient(String ipAddr, int port, int[][] arr2d) throws IOException {
@@ -16,6 +48,12 @@ public class MatrixClient extends Client {
         this.arr2d = arr2d;
     }
 
+    // constructor - FRAMED_OBJECTS is used with a server in non-blocking mode, BINARY is the most compact
+    public MatrixClient(String ipAddr, int port, int[][] arr2d, WireProtocol protocol) throws IOException {
+        super(ipAddr, port, protocol);
+        this.arr2d = arr2d;
+    }
+
     /**
      * this function asks for Matrix from the server
      * it sends the String "matrix" for the switch case to know what it should do
@@ -23,12 +61,189 @@ public class MatrixClient extends Client {
      * and waits for Matrix to return from the server
      */
     public void sendMatrix() {
+        this.loaded = false;
+        if (this.isBinary()) {
+            // the server answers with the size of the matrix only, it is the same matrix
+            ByteBuffer size = this.exchange(BinaryProtocol.MATRIX, BinaryProtocol.encodeMatrix(this.arr2d));
+            if (size != null) {
+                this.info(String.format("My matrix is: %n%s", new Matrix(this.arr2d)));
+            }
+            return;
+        }
         this.send("matrix", "matrix");
         this.send(this.arr2d, "2D array");
         Matrix m = (Matrix)this.receive();
         this.info(String.format("My matrix is: %n%s", m));
     }
 
+    /**
+     * this function sends the matrix to the server in chunks of rows (binary protocol)
+     * the server labels the rows as they arrive and answers with a short summary instead of the matrix,
+     * so neither side has to hold the whole matrix twice
+     * the chunks are not answered one by one, the client only waits for the summary after the last chunk
+     * @param rowsPerChunk - the number of rows in every chunk
+     */
+    public void streamMatrix(int rowsPerChunk) {
+        if (!this.isBinary()) {
+            this.err("Streaming the matrix needs WireProtocol.BINARY");
+            return;
+        }
+        this.loaded = false;
+        int rows = this.arr2d.length;
+        int columns = rows == 0 ? 0 : this.arr2d[0].length;
+        this.exchangeAsync(BinaryProtocol.MATRIX_BEGIN, BinaryProtocol.allocate(8).putInt(rows).putInt(columns));
+        rowsPerChunk = Math.max(1, rowsPerChunk);
+        for (int row = 0; row < rows; row += rowsPerChunk) {
+            this.exchangeAsync(BinaryProtocol.MATRIX_ROWS,
+                    BinaryProtocol.encodeRows(this.arr2d, row, Math.min(rowsPerChunk, rows - row)));
+        }
+        ByteBuffer summary = this.exchange(BinaryProtocol.MATRIX_END, BinaryProtocol.empty());
+        if (summary != null) {
+            this.info(String.format("My matrix of %dx%d was streamed: %d connected components, %d subs",
+                    summary.getInt(), summary.getInt(), summary.getInt(), summary.getInt()));
+        }
+    }
+
+    /**
+     * this function asks the server to load a matrix file (see Matrix.map) instead of sending arr2d
+     * the cells stay on the server, so the matrix may be huge - the server answers with its size only
+     * @param path - the path of the file, relative to the matrix directory of the server
+     */
+    public void loadMatrix(String path) {
+        int[] size;
+        if (this.isBinary()) {
+            ByteBuffer response = this.exchange(BinaryProtocol.LOAD_MATRIX, BinaryProtocol.encodeString(path));
+            if (response == null) {
+                return;
+            }
+            size = new int[]{response.getInt(), response.getInt()};
+        } else {
+            this.send("loadMatrix", "load matrix");
+            this.send(path, "path");
+            size = (int[]) this.receive();
+            if (size == null) {
+                return;
+            }
+        }
+        this.loaded = true;
+        this.info(String.format("My matrix is %s, %dx%d", path, size[0], size[1]));
+    }
+
+    /**
+     * this function changes a single cell of the matrix on the server, instead of sending the whole matrix again
+     * the server updates the components around the cell and answers with the new number of components and of subs
+     * @param row - the row of the cell
+     * @param column - the column of the cell
+     * @param value - the new value
+     */
+    public void setCell(int row, int column, int value) {
+        int[] summary;
+        if (this.isBinary()) {
+            ByteBuffer response = this.exchange(BinaryProtocol.SET_CELL, BinaryProtocol.encodeSetCell(row, column, value));
+            if (response == null) {
+                return;
+            }
+            summary = new int[]{response.getInt(), response.getInt()};
+        } else {
+            this.send("setCell", "set cell");
+            this.send(new Index(row, column), "index");
+            this.send(value, "value");
+            summary = (int[]) this.receive();
+            if (summary == null) {
+                return;
+            }
+        }
+        if (!this.loaded) {
+            this.arr2d[row][column] = value;
+        }
+        this.info(String.format("(%d,%d) is %d: %d connected components, %d subs", row, column, value,
+                summary[0], summary[1]));
+    }
+
+    /**
+     * this function changes a rectangular region of the matrix on the server
+     * @param top - the row of the upper left cell of the region
+     * @param left - the column of the upper left cell of the region
+     * @param values - the new values of the region, row after row
+     */
+    public void patchRegion(int top, int left, int[][] values) {
+        int[] summary;
+        if (this.isBinary()) {
+            ByteBuffer response = this.exchange(BinaryProtocol.PATCH_REGION, BinaryProtocol.encodePatch(top, left, values));
+            if (response == null) {
+                return;
+            }
+            summary = new int[]{response.getInt(), response.getInt()};
+        } else {
+            this.send("patchRegion", "patch region");
+            this.send(new Index(top, left), "index");
+            this.send(values, "region");
+            summary = (int[]) this.receive();
+            if (summary == null) {
+                return;
+            }
+        }
+        if (!this.loaded) {
+            for (int i = 0; i < values.length; i++) {
+                System.arraycopy(values[i], 0, this.arr2d[top + i], left, values[i].length);
+            }
+        }
+        this.info(String.format("A region of %dx%d from (%d,%d) was patched: %d connected components, %d subs",
+                values.length, values.length == 0 ? 0 : values[0].length, top, left, summary[0], summary[1]));
+    }
+
+    /**
+     * this function asks the server to answer getOnes and the paths in their compact forms
+     * (ComponentRuns and CompactPath), the functions of the client return the same results as before
+     * @param compact - true for the compact forms
+     */
+    public void setCompactResults(boolean compact) {
+        if (!this.isBinary()) {
+            // the binary protocol asks for it in every request, the object protocol once for the session
+            this.send("compactResults", "compact results");
+            this.send(compact, "compact");
+        }
+        this.compactResults = compact;
+    }
+
+    // the opcode of a request whose result has a compact form
+    private byte opcodeOf(byte opcode) {
+        return this.compactResults ? (byte) (opcode | BinaryProtocol.COMPACT) : opcode;
+    }
+
+    // the components out of a response to getOnes
+    private Set<Set<Index>> decodeOnes(ByteBuffer response) {
+        return this.compactResults ? BinaryProtocol.decodeRuns(response).toComponents()
+                : BinaryProtocol.decodeComponents(response);
+    }
+
+    // a path out of a response to a path request
+    private List<Index> decodePath(ByteBuffer response) {
+        if (!this.compactResults) {
+            return BinaryProtocol.decodePath(response, this.values());
+        }
+        return this.toPath(BinaryProtocol.decodeCompactPath(response));
+    }
+
+    // the paths out of a response to getShortestPaths
+    private List<List<Index>> decodePaths(ByteBuffer response) {
+        if (!this.compactResults) {
+            return BinaryProtocol.decodePaths(response, this.values());
+        }
+        return BinaryProtocol.decodeCompactPaths(response).stream().map(this::toPath).collect(Collectors.toList());
+    }
+
+    // a path that was received as an object, in any of its forms
+    @SuppressWarnings("unchecked")
+    private List<Index> toPath(Object path) {
+        return path instanceof CompactPath ? ((CompactPath) path).toIndices(this.values()) : (List<Index>) path;
+    }
+
+    // the values of the cells of the matrix of the session, if the client has them
+    private int[][] values() {
+        return this.loaded ? null : this.arr2d;
+    }
+
     /**
      * this function asks for groups of ones that the matrix have
      * the function send the String "getones" to the server
@@ -36,12 +251,111 @@ public class MatrixClient extends Client {
      * and print it to the screen
      */
     public void sendOnes() {
-        this.send("getOnes", "ones");
-        Set<Set<Index>> ones = (Set<Set<Index>>) this.receive();
+        Set<Set<Index>> ones;
+        if (this.isBinary()) {
+            ByteBuffer response = this.exchange(this.opcodeOf(BinaryProtocol.GET_ONES), BinaryProtocol.empty());
+            if (response == null) {
+                return;
+            }
+            ones = this.decodeOnes(response);
+        } else {
+            this.send("getOnes", "ones");
+            Object received = this.receive();
+            ones = received instanceof ComponentRuns ? ((ComponentRuns) received).toComponents()
+                    : (Set<Set<Index>>) received;
+        }
         String onesString = ones.stream().map(v -> v.toString()).collect(Collectors.joining("\n"));
         this.info("My connected components are: " + onesString);
     }
 
+    /**
+     * this function asks for the groups of ones as a stream (binary protocol) - the server sends every component
+     * as soon as it has found it, and at most window components that the client has not taken yet
+     * the stream should be closed, closing it before its end cancels the rest of the components
+     * a change of the cells (setCell, patchRegion) while the stream is open fails the rest of the stream
+     * (UncheckedIOException), and at most 16 streams of a client are open at the same time
+     * @param window - the most components on the way from the server, more means fewer pauses of the server
+     * @return - the components, in the order the server finds them
+     * @throws IOException - if the request could not be sent
+     * @throws IllegalStateException - if the client does not speak the binary protocol
+     */
+    public Stream<Set<Index>> getOnesStream(int window) throws IOException {
+        if (!this.isBinary()) {
+            throw new IllegalStateException("streaming the components needs WireProtocol.BINARY");
+        }
+        ComponentIterator components = new ComponentIterator(window);
+        components.streamId = this.openStream(BinaryProtocol.GET_ONES_STREAM, BinaryProtocol.encodeInt(window),
+                components);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(components,
+                Spliterator.NONNULL | Spliterator.DISTINCT), false).onClose(components::cancel);
+    }
+
+    /**
+     * the components of getOnesStream - the reader thread queues the frames as they arrive, they are decoded
+     * by the thread that takes them, and the credits are given back every half a window of components
+     * the server never sends more than window components ahead, so the queue never holds more than that
+     */
+    private final class ComponentIterator implements Iterator<Set<Index>>, StreamListener {
+        private final Object end = new Object();
+        private final BlockingQueue<Object> arrived = new LinkedBlockingQueue<>(); // payloads, then end or the failure
+        private final int window;
+        private int streamId;
+        private int taken; // the components that were taken since the last credit
+        private Object next;
+
+        // constructor
+        private ComponentIterator(int window) {
+            this.window = window;
+        }
+
+        @Override
+        public void onFrame(BinaryProtocol.Frame frame) {
+            this.arrived.add(frame.opcode == BinaryProtocol.COMPONENT ? frame.payload : this.end);
+        }
+
+        @Override
+        public void onFailure(IOException failure) {
+            this.arrived.add(failure);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.next == null) {
+                try {
+                    this.next = this.arrived.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted while waiting for the server", e);
+                }
+            }
+            if (this.next instanceof IOException) {
+                throw new UncheckedIOException((IOException) this.next);
+            }
+            return this.next != this.end;
+        }
+
+        @Override
+        public Set<Index> next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ByteBuffer payload = (ByteBuffer) this.next;
+            this.next = null;
+            if (++this.taken >= Math.max(1, this.window / 2)) {
+                exchangeAsync(BinaryProtocol.CREDIT, BinaryProtocol.encodeCredit(this.streamId, this.taken));
+                this.taken = 0;
+            }
+            return BinaryProtocol.decodeComponentRuns(payload);
+        }
+
+        // the client does not want the rest of the components, the server ends the stream
+        private void cancel() {
+            if (this.next != this.end && !(this.next instanceof IOException)) {
+                exchangeAsync(BinaryProtocol.CREDIT, BinaryProtocol.encodeCredit(this.streamId, 0));
+            }
+        }
+    }
+
     /**
      * this function asks for the shortest path from start index to end index
      * first it sends the String "getShortestPath" to the server
@@ -51,20 +365,88 @@ public class MatrixClient extends Client {
      * @param indices - contain the start index and the end index
      */
     public void getShortestPath(Index[] indices) {
-        this.send("getShortestPath", "shortest path");
-        this.send(indices, "indices");
-        List<Index> path = (List<Index>) this.receive();
+        List<Index> path;
+        if (this.isBinary()) {
+            ByteBuffer response = this.exchange(this.opcodeOf(BinaryProtocol.GET_SHORTEST_PATH), BinaryProtocol.encodeIndices(indices));
+            if (response == null) {
+                return;
+            }
+            path = this.decodePath(response);
+        } else {
+            this.send("getShortestPath", "shortest path");
+            this.send(indices, "indices");
+            path = this.toPath(this.receive());
+        }
         this.info(String.format("The shortest path: %n%s", path));
     }
 
+    /**
+     * the same as getShortestPath, but the server searches the path with the given engine
+     * first it sends the String "getShortestPathUsing" to the server
+     * second it sends the engine and then the Index[] indices
+     * third expect to receive the shortest path
+     * @param indices - contain the start index and the end index
+     * @param engine - the engine the server should use, e.g. PathEngine.JUMP_POINT for big open grids
+     */
+    public void getShortestPath(Index[] indices, PathEngine engine) {
+        List<Index> path;
+        if (this.isBinary()) {
+            ByteBuffer response = this.exchange(this.opcodeOf(BinaryProtocol.GET_SHORTEST_PATH_USING),
+                    BinaryProtocol.encodeIndices(engine, indices));
+            if (response == null) {
+                return;
+            }
+            path = this.decodePath(response);
+        } else {
+            this.send("getShortestPathUsing", "shortest path");
+            this.send(engine, "path engine");
+            this.send(indices, "indices");
+            path = this.toPath(this.receive());
+        }
+        this.info(String.format("The shortest path (%s): %n%s", engine, path));
+    }
+
+    /**
+     * this function asks for the shortest paths of many pairs of indices in a single request
+     * first it sends the String "getShortestPaths" to the server
+     * second it sends the Index[][] pairs, every pair contains a start index and an end index
+     * third expect to receive the shortest path of every pair, in the same order (null if there is none)
+     * @param pairs - the pairs of start index and end index
+     */
+    public void getShortestPaths(Index[][] pairs) {
+        List<List<Index>> paths;
+        if (this.isBinary()) {
+            ByteBuffer response = this.exchange(this.opcodeOf(BinaryProtocol.GET_SHORTEST_PATHS), BinaryProtocol.encodePairs(pairs));
+            if (response == null) {
+                return;
+            }
+            paths = this.decodePaths(response);
+        } else {
+            this.send("getShortestPaths", "shortest paths");
+            this.send(pairs, "pairs of indices");
+            paths = ((List<?>) this.receive()).stream().map(this::toPath).collect(Collectors.toList());
+        }
+        String pathsString = paths.stream().map(String::valueOf).collect(Collectors.joining("\n"));
+        this.info(String.format("The shortest paths: %n%s", pathsString));
+    }
+
     /**
      * this function asks for the number of submarines in the matrix
      * first it sends the String "getNumOfSubs" to the server
      * second expect to receive the number of submarines in the matrix
      */
     public void getNumOfSubs(){
-        this.send("getNumOfSubs", "number of subs");
-        Integer numSubs = (int) this.receive();
+        Integer numSubs;
+        if (this.isBinary()) {
+            ByteBuffer response = this.exchange(BinaryProtocol.GET_NUM_OF_SUBS, BinaryProtocol.empty());
+            if (response == null) {
+                return;
+            }
+            numSubs = response.getInt();
+        } else {
+            this.send("getNumOfSubs", "number of subs");
+            numSubs = (int) this.receive();
+        }
         this.info(String.format("Num subs: %d", numSubs));
     }
 
@@ -77,9 +459,121 @@ public class MatrixClient extends Client {
      * @param indices - contain the start index and the end index
      */
     public void getEasiestPath(Index[] indices) {
-        this.send("getEasiestPath", "easiest path");
-        this.send(indices, "indices");
-        List<Index> path = (List<Index>) this.receive();
+        List<Index> path;
+        if (this.isBinary()) {
+            ByteBuffer response = this.exchange(this.opcodeOf(BinaryProtocol.GET_EASIEST_PATH), BinaryProtocol.encodeIndices(indices));
+            if (response == null) {
+                return;
+            }
+            path = this.decodePath(response);
+        } else {
+            this.send("getEasiestPath", "easiest path");
+            this.send(indices, "indices");
+            path = this.toPath(this.receive());
+        }
         this.info(String.format("The easiest path: %n%s", path));
     }
+
+    /*
+    asynchronous API (binary protocol)
+     */
+
+    // the future of a request that cannot be sent asynchronously with the protocol of the client
+    private <T> CompletableFuture<T> notBinary() {
+        return CompletableFuture.failedFuture(
+                new IllegalStateException("the asynchronous requests need WireProtocol.BINARY"));
+    }
+
+    /**
+     * this function sends the matrix without waiting for the server
+     * the requests sent after it are handled with this matrix
+     * @return - completes when the server has stored the matrix
+     */
+    public CompletableFuture<Void> sendMatrixAsync() {
+        if (!this.isBinary()) {
+            return this.notBinary();
+        }
+        this.loaded = false;
+        return this.exchangeAsync(BinaryProtocol.MATRIX, BinaryProtocol.encodeMatrix(this.arr2d))
+                .thenApply(size -> null);
+    }
+
+    /**
+     * the groups of ones of the matrix as runs, without expanding them to indices (compact form in any case)
+     * @return - completes with the runs of every component
+     */
+    public CompletableFuture<ComponentRuns> getOnesRunsAsync() {
+        if (!this.isBinary()) {
+            return this.notBinary();
+        }
+        return this.exchangeAsync((byte) (BinaryProtocol.GET_ONES | BinaryProtocol.COMPACT), BinaryProtocol.empty())
+                .thenApply(BinaryProtocol::decodeRuns);
+    }
+
+    // the groups of ones of the matrix
+    public CompletableFuture<Set<Set<Index>>> getOnesAsync() {
+        if (!this.isBinary()) {
+            return this.notBinary();
+        }
+        return this.exchangeAsync(this.opcodeOf(BinaryProtocol.GET_ONES), BinaryProtocol.empty())
+                .thenApply(this::decodeOnes);
+    }
+
+    // the number of submarines in the matrix
+    public CompletableFuture<Integer> getNumOfSubsAsync() {
+        if (!this.isBinary()) {
+            return this.notBinary();
+        }
+        return this.exchangeAsync(BinaryProtocol.GET_NUM_OF_SUBS, BinaryProtocol.empty())
+                .thenApply(ByteBuffer::getInt);
+    }
+
+    /**
+     * @param indices - contain the start index and the end index
+     * @return - completes with the shortest path, or null if there is none
+     */
+    public CompletableFuture<List<Index>> getShortestPathAsync(Index[] indices) {
+        if (!this.isBinary()) {
+            return this.notBinary();
+        }
+        return this.exchangeAsync(this.opcodeOf(BinaryProtocol.GET_SHORTEST_PATH), BinaryProtocol.encodeIndices(indices))
+                .thenApply(this::decodePath);
+    }
+
+    /**
+     * @param indices - contain the start index and the end index
+     * @param engine - the engine the server should use
+     * @return - completes with the shortest path, or null if there is none
+     */
+    public CompletableFuture<List<Index>> getShortestPathAsync(Index[] indices, PathEngine engine) {
+        if (!this.isBinary()) {
+            return this.notBinary();
+        }
+        return this.exchangeAsync(this.opcodeOf(BinaryProtocol.GET_SHORTEST_PATH_USING), BinaryProtocol.encodeIndices(engine, indices))
+                .thenApply(this::decodePath);
+    }
+
+    /**
+     * @param pairs - the pairs of start index and end index
+     * @return - completes with the shortest path of every pair, in the same order (null if there is none)
+     */
+    public CompletableFuture<List<List<Index>>> getShortestPathsAsync(Index[][] pairs) {
+        if (!this.isBinary()) {
+            return this.notBinary();
+        }
+        return this.exchangeAsync(this.opcodeOf(BinaryProtocol.GET_SHORTEST_PATHS), BinaryProtocol.encodePairs(pairs))
+                .thenApply(this::decodePaths);
+    }
+
+    /**
+     * @param indices - contain the start index and the end index
+     * @return - completes with the lightest path, or null if there is none
+     */
+    public CompletableFuture<List<Index>> getEasiestPathAsync(Index[] indices) {
+        if (!this.isBinary()) {
+            return this.notBinary();
+        }
+        return this.exchangeAsync(this.opcodeOf(BinaryProtocol.GET_EASIEST_PATH), BinaryProtocol.encodeIndices(indices))
+                .thenApply(this::decodePath);
+    }
 }
@@ -1,38 +1,90 @@
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 
 /**
  * This class handles' server.Matrix-related tasks
  */
-public class MatrixHandler implements IHandler {
-    private final ThreadPoolExecutor tasksThreadPool;
+public class MatrixHandler implements IHandler, IFrameHandler {
+    private static final int MAX_IN_FLIGHT = 16; // pipelined requests of a single client (binary protocol)
+    private static final int MAX_WINDOW = 1 << 16; // the most credits of a stream of components (binary protocol)
+    // the most cells of a streaming upload (binary protocol), 512MB of ints - twice a matrix in a single frame
+    private static final long MAX_UPLOAD_CELLS = 1L << 27;
+
+    private final Executor tasksThreadPool; // runs the algorithms of the matrices, not the connections
+    private final MatrixResultCache cache; // shared by the handlers of all the clients
+    private final Path matrixDirectory; // the files clients may load, null if loading is disabled
 
     private Matrix matrix;
+    private MatrixResultCache.Entry results; // the cached results of matrix
+    private StreamingLabeler upload; // the streaming upload in progress (binary protocol)
+    private DynamicComponents changes; // the matrix of the client once it has changed cells of it, else null
     private volatile boolean doWork = true;
+    private boolean compactResults; // the client asked for ComponentRuns and CompactPath (object protocol)
     private String requester;
     private ObjectInputStream inputStream;
     private ObjectOutputStream outputStream;
 
-    private Promise<Set<Set<Index>>> connectedComponents = new Promise<>();
-    private Promise<Integer> numOfSubs = new Promise<>();
+    private final Promise<Set<Set<Index>>> connectedComponents;
+    private Promise<Integer> numOfSubs;
+
+    public MatrixHandler(ThreadPoolExecutor tasksThreadPool, MatrixResultCache cache) {
+        this(tasksThreadPool, cache, null);
+    }
+
+    // constructor - clients may load the matrix files of matrixDirectory (see Matrix.map)
+    public MatrixHandler(ThreadPoolExecutor tasksThreadPool, MatrixResultCache cache, Path matrixDirectory) {
+        this((Executor) tasksThreadPool, cache, matrixDirectory);
+    }
+
+    /**
+     * constructor - the algorithms of the matrices run on a fork-join pool of their own,
+     * apart from the threads that handle the connections: a large matrix is labeled in strips that
+     * the workers steal from each other, and a heavy upload only delays the work of the pool -
+     * the requests of the other clients are still read and answered by their own threads
+     * @param analyticsPool - runs the algorithms of the matrices, usually shared by all the handlers
+     * @param cache - the results of the matrices, shared by all the handlers
+     * @param matrixDirectory - the matrix files clients may load, or null
+     */
+    public MatrixHandler(ForkJoinPool analyticsPool, MatrixResultCache cache, Path matrixDirectory) {
+        this((Executor) analyticsPool, cache, matrixDirectory);
+    }
 
-    public MatrixHandler(ThreadPoolExecutor tasksThreadPool) {
+    private MatrixHandler(Executor tasksThreadPool, MatrixResultCache cache, Path matrixDirectory) {
         this.tasksThreadPool = tasksThreadPool;
+        this.cache = cache;
+        this.matrixDirectory = matrixDirectory;
 
         // Setting initial values for connectedComponents and numOfSubs so the server won't be stuck
         // if client has asked for one of those without sending a matrix first.
-        this.connectedComponents.setValue(new HashSet<>());
-        this.numOfSubs.setValue(-1);
+        this.connectedComponents = Promise.of(new HashSet<>());
+        this.numOfSubs = Promise.of(-1);
     }
 
     @Override
     public void resetMembers() {
         this.matrix = null;
+        this.results = null;
+        this.upload = null;
+        this.changes = null;
+        this.compactResults = false;
         this.requester = null;
         this.inputStream = null;
         this.outputStream = null;
@@ -93,6 +145,8 @@ public class MatrixHandler implements IHandler {
     private void send(Object object, String description) {
         try {
             this.outputStream.writeObject(object);
+            // forget the objects that were sent, else the handle table keeps them for the whole session
+            this.outputStream.reset();
         } catch (IOException e) {
             this.err("Failed to send " + description + " to " + this.requester);
         }
@@ -114,6 +168,180 @@ public class MatrixHandler implements IHandler {
         return null;
     }
 
+    /*
+    the operations below are shared by the object protocol and the binary protocol
+    they get the results of the matrix the request was sent for, a pipelined request of the binary protocol
+    may still run while a newer matrix is uploaded
+     */
+
+    /**
+     * this function makes the uploaded matrix the matrix of the client
+     * a matrix that was already uploaded (by any client) shares its results,
+     * else the cache starts computing connectedComponents and numOfSubs in parallel
+     * @param uploaded - the matrix the client has sent
+     */
+    private void setMatrix(Matrix uploaded) {
+        this.setMatrix(uploaded, null);
+    }
+
+    /**
+     * the same as setMatrix, for a matrix whose number of submarines is known already
+     * @param uploaded - the matrix the client has sent
+     * @param numOfSubs - the number of submarines of the matrix, or null if it should be computed
+     */
+    private void setMatrix(Matrix uploaded, Integer numOfSubs) {
+        this.results = this.cache.getOrCompute(uploaded, tasksThreadPool, numOfSubs);
+        this.changes = null;
+        this.info("Results cache: " + this.cache);
+        this.matrix = this.results.getMatrix();
+        this.numOfSubs = this.results.getNumOfSubs();
+    }
+
+    // the components of the matrix of the client, they are built on first use if the matrix is mapped
+    private Promise<Set<Set<Index>>> connectedComponents() {
+        return this.results == null ? this.connectedComponents : this.results.getConnectedComponents();
+    }
+
+    // the components of the matrix of the client as runs, no components if there is no matrix
+    private ComponentRuns componentRuns() throws InterruptedException {
+        return this.results == null ? new ComponentRuns(new int[1], new int[0]) : this.results.getComponentRuns().getValue();
+    }
+
+    // a path or the compact form of the path, as the client asked for (object protocol)
+    private Object pathResult(List<Index> path) {
+        return this.compactResults ? CompactPath.of(path) : path;
+    }
+
+    /**
+     * this function maps a matrix file of the server (see Matrix.map) and makes it the matrix of the client
+     * the cells stay in the file, so the matrix may be larger than the heap and is never sent through the socket
+     * @param path - the path of the file, relative to the matrix directory of the server
+     * @return - the mapped matrix
+     * @throws Exception - if loading is disabled, the path leaves the matrix directory or the file is not a matrix
+     */
+    private Matrix loadMatrix(String path) throws Exception {
+        if (this.matrixDirectory == null) {
+            throw new Exception("loading matrices from files is disabled on this server");
+        }
+        Path directory = this.matrixDirectory.toRealPath();
+        Path file = directory.resolve(path).toRealPath();
+        if (!file.startsWith(directory)) {
+            throw new Exception(path + " is not in the matrix directory");
+        }
+        this.info("Loading " + file + " for " + this.requester);
+        Matrix loaded = Matrix.map(file);
+        this.setMatrix(loaded);
+        return loaded;
+    }
+
+    /**
+     * this function returns the matrix of the client for changing its cells in place
+     * the first change copies the matrix, it is shared with the other clients that uploaded the same cells,
+     * and labels it once - from then on every change updates the components and the submarines around it
+     * @return - the components of the matrix of the client
+     * @throws Exception - if no matrix was sent or the matrix is mapped (it is read-only)
+     */
+    private DynamicComponents changes() throws Exception {
+        if (this.changes == null) {
+            if (requireResults(this.results).getMatrix().isMapped()) {
+                throw new Exception("a matrix that was loaded from a file is read-only");
+            }
+            this.changes = new DynamicComponents(this.results.getMatrix().copy());
+        }
+        return this.changes;
+    }
+
+    /**
+     * this function makes the changed matrix the matrix of the client,
+     * its components are built only if they are asked for
+     * @return - the number of components and of submarines of the changed matrix
+     */
+    private int[] changed() {
+        DynamicComponents changed = this.changes;
+        this.results = this.cache.detached(changed.getMatrix(), changed.getNumOfSubs(), changed::toLabels,
+                tasksThreadPool);
+        this.matrix = changed.getMatrix();
+        this.numOfSubs = this.results.getNumOfSubs();
+        return new int[]{changed.getCount(), changed.getNumOfSubs()};
+    }
+
+    /**
+     * this function changes a single cell of the matrix of the client
+     * @param index - the cell
+     * @param value - the new value
+     * @return - the number of components and of submarines after the change
+     * @throws Exception - if there is no matrix, it is read-only or the index is out of it
+     */
+    private int[] setCell(Index index, int value) throws Exception {
+        this.changes().set(index.getRow(), index.getColumn(), value);
+        return this.changed();
+    }
+
+    /**
+     * this function changes a rectangular region of the matrix of the client
+     * @param topLeft - the upper left cell of the region
+     * @param values - the new values of the region, row after row
+     * @return - the number of components and of submarines after the change
+     * @throws Exception - if there is no matrix, it is read-only or the region is out of it
+     */
+    private int[] patchRegion(Index topLeft, int[][] values) throws Exception {
+        this.changes().patch(topLeft.getRow(), topLeft.getColumn(), values);
+        return this.changed();
+    }
+
+    // the results of the matrix of the client, a request that needs a matrix fails without one
+    private static MatrixResultCache.Entry requireResults(MatrixResultCache.Entry results) throws Exception {
+        if (results == null) {
+            throw new Exception("no matrix was sent");
+        }
+        return results;
+    }
+
+    /**
+     * this function returns the shortest path between the indices,
+     * searching it only if it was not searched recently for this matrix (by any client)
+     * @param results - the results of the matrix
+     * @param indices - contains start index and end index
+     * @param engine - the engine that searches the path
+     * @return - the path, or null if there is none
+     * @throws Exception - if the indices are illegal
+     */
+    private List<Index> shortestPath(MatrixResultCache.Entry results, Index[] indices, PathEngine engine)
+            throws Exception {
+        requireResults(results);
+        if (indices.length != 2) {
+            throw new Exception("the indices are illegal");
+        }
+        this.info("Start: " + indices[0] + ",  end: " + indices[1] + ", engine: " + engine + ".");
+        return results.getPath("shortest " + engine, indices,
+                () -> results.getMatrix().getShortestPath(indices, engine));
+    }
+
+    // the shortest paths of all the pairs of indices
+    private List<List<Index>> shortestPaths(MatrixResultCache.Entry results, Index[][] pairs) throws Exception {
+        requireResults(results);
+        this.info("Searching " + pairs.length + " shortest paths.");
+        return results.getMatrix().getShortestPaths(pairs, tasksThreadPool);
+    }
+
+    // the same as shortestPaths, the promise is completed by the search that finishes last
+    private Promise<List<List<Index>>> shortestPathsAsync(MatrixResultCache.Entry results, Index[][] pairs)
+            throws Exception {
+        requireResults(results);
+        this.info("Searching " + pairs.length + " shortest paths.");
+        return results.getMatrix().getShortestPathsAsync(pairs, tasksThreadPool);
+    }
+
+    // the lightest path between the indices, remembered like the shortest path
+    private List<Index> easiestPath(MatrixResultCache.Entry results, Index[] indices) throws Exception {
+        requireResults(results);
+        if (indices.length != 2) {
+            throw new Exception("the indices are illegal");
+        }
+        this.info("Start: " + indices[0] + ",  end: " + indices[1] + ".");
+        return results.getPath("easiest", indices, () -> results.getMatrix().getWeightedShortestPath(indices));
+    }
+
     @Override
     public void handle(String clientId, InputStream fromClient, OutputStream toClient)
             throws IOException {
@@ -123,73 +351,497 @@ public class MatrixHandler implements IHandler {
         ObjectInputStream and ObjectOutputStream can read and write both primitives and objects
          */
         this.requester = clientId;
-        this.inputStream = new ObjectInputStream(fromClient);
+        InputStream input = new BufferedInputStream(fromClient);
+        if (BinaryProtocol.acceptHandshake(input, toClient)) {
+            this.info(this.requester + " speaks the binary protocol");
+            this.handleBinary(new DataInputStream(input), new BufferedOutputStream(toClient));
+            return;
+        }
+        this.inputStream = new ObjectInputStream(input);
         this.outputStream = new ObjectOutputStream(toClient);
 
         // handle client's tasks using switch case
         while (this.doWork) {
             try {
-                switch (Objects.requireNonNull(this.receiveRequest())) {
-                    case "matrix": {
-                        int[][] tempArray = (int[][]) this.receive("2D array");
-                        this.matrix = new Matrix(tempArray);
-                        // Empty the connected components and numOfSubs, because we've got a new Matrix to calculate those for it.
-                        this.connectedComponents = new Promise<>();
-                        this.numOfSubs = new Promise<>();
-
-                        // Parallelizing connectedComponents and numOfSubs
-                        tasksThreadPool.execute(() -> {
-                            try {
-                                this.connectedComponents.setValue(this.matrix.getConnectedComponents(tasksThreadPool));
-                            } catch (InterruptedException e) {
-                                e.printStackTrace();
-                            }
-                        });
-                        tasksThreadPool.execute(() -> {
-                            try {
-                                this.numOfSubs.setValue(this.matrix.getNumOfSubs(tasksThreadPool));
-                            } catch (InterruptedException e) {
-                                e.printStackTrace();
-                            }
-                        });
-                        this.send(this.matrix, "matrix");
-                        break;
-                    }
-                    case "getOnes": {
-                        this.send(this.connectedComponents.getValue(), "all ones of matrix");
-                        break;
+                this.dispatch(Objects.requireNonNull(this.receiveRequest()));
+            } catch (Exception ignored) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * this function handles a single request of the client
+     * the arguments of the request are read from the input stream and the response is written to the output stream
+     * @param request - the request the client has sent
+     * @throws Exception - if the request could not be handled
+     */
+    private void dispatch(String request) throws Exception {
+        switch (request) {
+            case "matrix": {
+                int[][] tempArray = (int[][]) this.receive("2D array");
+                this.setMatrix(new Matrix(tempArray));
+                this.send(this.matrix, "matrix");
+                break;
+            }
+            case "loadMatrix": {
+                String path = (String) this.receive("path");
+                Matrix loaded = this.loadMatrix(path);
+                this.send(new int[]{loaded.getRows(), loaded.getColumns()}, "size of matrix");
+                break;
+            }
+            case "setCell": {
+                Index index = (Index) this.receive("index");
+                Integer value = (Integer) this.receive("value");
+                this.send(this.setCell(index, value), "number of components and subs");
+                break;
+            }
+            case "patchRegion": {
+                Index topLeft = (Index) this.receive("index");
+                int[][] values = (int[][]) this.receive("region");
+                this.send(this.patchRegion(topLeft, values), "number of components and subs");
+                break;
+            }
+            case "compactResults": {
+                this.compactResults = (Boolean) this.receive("compact results");
+                break;
+            }
+            case "getOnes": {
+                if (this.compactResults) {
+                    this.send(this.componentRuns(), "runs of all ones of matrix");
+                } else {
+                    this.send(this.connectedComponents().getValue(), "all ones of matrix");
+                }
+                break;
+            }
+            case "getShortestPath": {
+                Index[] indices = (Index[]) this.receive("indices");
+                // both ends are known, so the path is searched from both of them
+                this.send(this.pathResult(this.shortestPath(this.results, indices, PathEngine.BIDIRECTIONAL_BFS)),
+                        "shortest path:");
+                break;
+            }
+            case "getShortestPathUsing": {
+                PathEngine engine = (PathEngine) this.receive("path engine");
+                Index[] indices = (Index[]) this.receive("indices");
+                this.send(this.pathResult(this.shortestPath(this.results, indices, engine)), "shortest path:");
+                break;
+            }
+            case "getShortestPaths": {
+                Index[][] pairs = (Index[][]) this.receive("pairs of indices");
+                List<List<Index>> paths = this.shortestPaths(this.results, pairs);
+                if (this.compactResults) {
+                    List<CompactPath> compactPaths = new ArrayList<>(paths.size());
+                    for (List<Index> path : paths) {
+                        compactPaths.add(CompactPath.of(path));
                     }
-                    case "getShortestPath": {
-                        Index[] indices = (Index[]) this.receive("indices");
-                        if (indices.length != 2) {
-                            throw new Exception("the indices are illegal");
-                        }
-                        this.info("Start: " + indices[0] + ",  end: " + indices[1] + ".");
-                        this.send(this.matrix.getShortestPath(indices), "shortest path:");
-                        break;
+                    this.send(compactPaths, "shortest paths:");
+                } else {
+                    this.send(paths, "shortest paths:");
+                }
+                break;
+            }
+            case "getNumOfSubs": {
+                this.send(this.numOfSubs.getValue(), "number of subs");
+                break;
+            }
+            case "getEasiestPath": {
+                Index[] indices = (Index[]) this.receive("indices");
+                this.send(this.pathResult(this.easiestPath(this.results, indices)), "weighted shortest path:");
+                break;
+            }
+            case "stop": {
+                doWork = false;
+                break;
+            }
+            default: {
+                break;
+            }
+        }
+    }
+
+    /**
+     * this function handles the requests of a client that speaks the binary protocol
+     * the requests are pipelined - a request that changes the state of the session (uploads, stop) is handled
+     * in order, any other request runs on its own and is answered as soon as it is done, tagged with its id,
+     * so the responses may arrive in a different order than the requests
+     * a request that is answered from the results of the matrix (getOnes, getNumOfSubs) or from searches
+     * on the compute pool (getShortestPaths) does not take a thread while they run,
+     * it is answered by a callback of their promise
+     * unlike the legacy protocol, a request that fails is answered with an ERROR frame and the session goes on
+     * a stream of components (GET_ONES_STREAM) holds its thread while it waits for credits, the CREDIT frames
+     * that give them are handled right away, so a stream never waits behind the requests in flight
+     * the credits are read by this thread, so nothing this thread waits for may wait for credits:
+     * a stream takes a slot of its own instead of a permit of the requests in flight (no slot left fails it),
+     * and a change of the cells cancels the open streams before it waits for the requests in flight
+     * @param fromClient - the stream from the client, after the handshake
+     * @param toClient - the stream to the client
+     * @throws IOException - if a frame could not be read
+     */
+    private void handleBinary(DataInputStream fromClient, OutputStream toClient) throws IOException {
+        // the requests in flight wait for results, so they do not run on tasksThreadPool that computes them
+        ExecutorService inFlight = Executors.newCachedThreadPool();
+        Semaphore permits = new Semaphore(MAX_IN_FLIGHT); // a client that sends faster than it is answered waits
+        Map<Integer, Semaphore> streams = new ConcurrentHashMap<>(); // the credits of every stream, by request id
+        Semaphore streamSlots = new Semaphore(MAX_IN_FLIGHT); // the open streams, they wait for the client
+        Set<Integer> changed = ConcurrentHashMap.newKeySet(); // the streams cancelled by a change of the cells
+        try {
+            while (this.doWork) {
+                BinaryProtocol.Frame request = BinaryProtocol.readFrame(fromClient);
+                if (request == null) {
+                    break;
+                }
+                if (request.opcode == BinaryProtocol.CREDIT) {
+                    credit(streams, request.payload);
+                    continue;
+                }
+                this.info("Received request '" + BinaryProtocol.nameOf(request.opcode) + "' from " + this.requester);
+                if (BinaryProtocol.isChange(request.opcode)) {
+                    // the cells change in place, so the requests in flight that read them are finished first,
+                    // the streams would wait for credits that only this thread can read, so they fail instead
+                    for (Integer streamId : streams.keySet()) {
+                        changed.add(streamId);
+                        cancel(streams, streamId);
                     }
-                    case "getNumOfSubs": {
-                        this.send(this.numOfSubs.getValue(), "number of subs");
-                        break;
+                    streamSlots.acquire(MAX_IN_FLIGHT);
+                    permits.acquire(MAX_IN_FLIGHT);
+                    try {
+                        this.respond(toClient, request, this.results);
+                    } finally {
+                        permits.release(MAX_IN_FLIGHT);
+                        streamSlots.release(MAX_IN_FLIGHT);
                     }
-                    case "getEasiestPath": {
-                        Index[] indices = (Index[]) this.receive("indices");
-                        this.info("Start: " + indices[0] + ",  end: " + indices[1] + ".");
-                        this.send(this.matrix.getWeightedShortestPath(indices), "weighted shortest path:");
-                        break;
+                    continue;
+                }
+                if (BinaryProtocol.changesSession(request.opcode)) {
+                    this.respond(toClient, request, this.results);
+                    continue;
+                }
+                MatrixResultCache.Entry results = this.results; // the matrix at the time of the request
+                if (request.opcode == BinaryProtocol.GET_ONES_STREAM) {
+                    if (!streamSlots.tryAcquire()) {
+                        this.write(toClient, request, null,
+                                new Exception("more than " + MAX_IN_FLIGHT + " streams are open"));
+                        continue;
                     }
-                    case "stop": {
-                        doWork = false;
-                        break;
+                    int window = request.payload.getInt();
+                    Semaphore credits = new Semaphore(Math.max(0, Math.min(window, MAX_WINDOW)));
+                    streams.put(request.requestId, credits);
+                    inFlight.execute(() -> {
+                        try {
+                            this.streamOnes(toClient, request, window, results, credits, streams, changed);
+                        } finally {
+                            streams.remove(request.requestId);
+                            changed.remove(request.requestId);
+                            streamSlots.release();
+                        }
+                    });
+                    continue;
+                }
+                permits.acquire();
+                Promise<ByteBuffer> pending = this.pendingResponse(request, results, inFlight);
+                if (pending != null) {
+                    pending.whenComplete((response, failure) -> {
+                        try {
+                            this.write(toClient, request, response, failure);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                    continue;
+                }
+                inFlight.execute(() -> {
+                    try {
+                        this.respond(toClient, request, results);
+                    } finally {
+                        permits.release();
                     }
-                    default: {
-                        break;
+                });
+            }
+            // the streams will not get more credits, they end at once
+            for (Integer streamId : streams.keySet()) {
+                cancel(streams, streamId);
+            }
+            // the requests in flight are answered before the connection is closed
+            if (permits.tryAcquire(MAX_IN_FLIGHT, 1, TimeUnit.MINUTES)) {
+                permits.release(MAX_IN_FLIGHT);
+            }
+            if (streamSlots.tryAcquire(MAX_IN_FLIGHT, 1, TimeUnit.MINUTES)) {
+                streamSlots.release(MAX_IN_FLIGHT);
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("interrupted while handling " + this.requester);
+        } finally {
+            inFlight.shutdownNow();
+        }
+    }
+
+    /**
+     * this function handles a single request of the binary protocol and writes its response
+     * @param toClient - the stream to the client, shared by all the requests of the client
+     * @param request - the frame of the request
+     * @param results - the results of the matrix of the client when the request arrived
+     */
+    private void respond(OutputStream toClient, BinaryProtocol.Frame request, MatrixResultCache.Entry results) {
+        ByteBuffer response = null;
+        Throwable failure = null;
+        try {
+            response = this.dispatchBinary(request, results);
+        } catch (Exception e) {
+            failure = e;
+        }
+        this.write(toClient, request, response, failure);
+    }
+
+    /**
+     * this function returns the response of a request that is answered from a promise of the results
+     * or of the searches of its paths, it is encoded on the executor once the promise is completed -
+     * the promise is completed by a thread of the pool that computes them, which must not encode
+     * or write to the socket of a client
+     * @param request - the frame of the request
+     * @param results - the results of the matrix of the client when the request arrived
+     * @param executor - encodes the response
+     * @return - the promise of the response, or null if the request is handled by dispatchBinary
+     */
+    private Promise<ByteBuffer> pendingResponse(BinaryProtocol.Frame request, MatrixResultCache.Entry results,
+                                                ExecutorService executor) {
+        if (results == null) {
+            return null; // dispatchBinary fails the request
+        }
+        if (request.opcode == (BinaryProtocol.GET_ONES | BinaryProtocol.COMPACT)) {
+            // the runs are ready before the components, they are built from the same labels
+            return results.getComponentRuns().thenApply(BinaryProtocol::encodeRuns, executor);
+        }
+        if (BinaryProtocol.baseOf(request.opcode) == BinaryProtocol.GET_SHORTEST_PATHS) {
+            Function<List<List<Index>>, ByteBuffer> encode = BinaryProtocol.isCompact(request.opcode)
+                    ? BinaryProtocol::encodeCompactPaths : BinaryProtocol::encodePaths;
+            Promise<List<List<Index>>> paths;
+            try {
+                paths = this.shortestPathsAsync(results, BinaryProtocol.decodePairs(request.payload));
+            } catch (Exception e) {
+                paths = new Promise<>(); // e.g. an illegal pair, it is answered with an ERROR frame
+                paths.setException(e);
+            }
+            return paths.thenApply(encode, executor);
+        }
+        switch (request.opcode) {
+            case BinaryProtocol.GET_ONES:
+                return results.getConnectedComponents().thenApply(BinaryProtocol::encodeComponents, executor);
+            case BinaryProtocol.GET_NUM_OF_SUBS:
+                return results.getNumOfSubs().thenApply(BinaryProtocol::encodeInt, executor);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * this function answers GET_ONES_STREAM - the components are found by a single scan of the rows of the matrix
+     * (ComponentScanner) and every component is sent in its own COMPONENT frame as soon as the scan has finished it
+     * every component takes a credit of the client, so at most window components are on the way to the client
+     * and the scan waits for the client instead of piling up the components it has not taken yet
+     * the stream ends with STREAM_END, also when the client cancels it, or with an ERROR frame if it fails
+     * or if a change of the cells cancels it
+     * @param toClient - the stream to the client, shared by all the requests of the client
+     * @param request - the frame of the request
+     * @param window - the credits the client has given with the request
+     * @param results - the results of the matrix of the client when the request arrived
+     * @param credits - the credits of the stream
+     * @param streams - the credits of the streams of the client, the stream is cancelled once it is removed
+     * @param changed - the streams that were cancelled by a change of the cells
+     */
+    private void streamOnes(OutputStream toClient, BinaryProtocol.Frame request, int window,
+                            MatrixResultCache.Entry results, Semaphore credits, Map<Integer, Semaphore> streams,
+                            Set<Integer> changed) {
+        int[] sent = new int[1];
+        try {
+            if (window <= 0 || window > MAX_WINDOW) {
+                throw new Exception("illegal window of " + window + " components");
+            }
+            ComponentScanner.scan(requireResults(results).getMatrix(), runs -> {
+                credits.acquire();
+                if (streams.get(request.requestId) != credits) {
+                    if (changed.contains(request.requestId)) {
+                        throw new Exception("the matrix has changed, the stream was cancelled");
                     }
+                    return false; // cancelled by the client
                 }
-            } catch (Exception ignored) {
-                break;
+                this.send(toClient, BinaryProtocol.COMPONENT, request.requestId,
+                        BinaryProtocol.encodeComponentRuns(runs));
+                sent[0]++;
+                return true;
+            });
+            this.send(toClient, BinaryProtocol.STREAM_END, request.requestId, BinaryProtocol.encodeInt(sent[0]));
+        } catch (Exception e) {
+            this.write(toClient, request, null, e);
+        }
+    }
+
+    // CREDIT - more credits for a stream of the client, or its cancellation
+    private static void credit(Map<Integer, Semaphore> streams, ByteBuffer payload) {
+        int streamId = payload.getInt();
+        int credits = payload.getInt();
+        if (credits <= 0) {
+            cancel(streams, streamId);
+            return;
+        }
+        Semaphore stream = streams.get(streamId);
+        if (stream != null && stream.availablePermits() < MAX_WINDOW) {
+            stream.release(Math.min(credits, MAX_WINDOW));
+        }
+    }
+
+    // ends a stream, the credit it is waiting for is the last one
+    private static void cancel(Map<Integer, Semaphore> streams, int streamId) {
+        Semaphore stream = streams.remove(streamId);
+        if (stream != null) {
+            stream.release();
+        }
+    }
+
+    /**
+     * this function writes the response of a request of the binary protocol, or an ERROR frame if it has failed
+     * @param toClient - the stream to the client, shared by all the requests of the client
+     * @param request - the frame of the request
+     * @param response - the response frame, or null if the request has no response
+     * @param failure - the reason the request has failed, or null
+     */
+    private void write(OutputStream toClient, BinaryProtocol.Frame request, ByteBuffer response, Throwable failure) {
+        byte opcode = request.opcode;
+        if (failure != null) {
+            this.err("Failed to handle '" + BinaryProtocol.nameOf(request.opcode) + "' of " + this.requester
+                    + ": " + failure.getMessage());
+            opcode = BinaryProtocol.ERROR;
+            response = BinaryProtocol.encodeError(failure.getMessage());
+        }
+        if (response == null) {
+            return;
+        }
+        try {
+            this.send(toClient, opcode, request.requestId, response);
+        } catch (IOException e) {
+            this.err("Failed to send '" + BinaryProtocol.nameOf(request.opcode) + "' to " + this.requester);
+        }
+    }
+
+    // writes a frame, the frames of the requests in flight must not interleave
+    private void send(OutputStream toClient, byte opcode, int requestId, ByteBuffer frame) throws IOException {
+        synchronized (toClient) {
+            BinaryProtocol.writeFrame(toClient, opcode, requestId, frame);
+            toClient.flush();
+        }
+    }
+
+    /**
+     * this function handles a single request of the binary protocol
+     * @param request - the frame of the request
+     * @param results - the results of the matrix of the client when the request arrived
+     * @return - the response frame (from BinaryProtocol), or null if the request has no response
+     * @throws Exception - if the request could not be handled
+     */
+    private ByteBuffer dispatchBinary(BinaryProtocol.Frame request, MatrixResultCache.Entry results)
+            throws Exception {
+        ByteBuffer payload = request.payload;
+        boolean compact = BinaryProtocol.isCompact(request.opcode);
+        switch (BinaryProtocol.baseOf(request.opcode)) {
+            case BinaryProtocol.MATRIX:
+                this.setMatrix(BinaryProtocol.decodeMatrix(payload));
+                // the client has the matrix already, so only its size is sent back
+                return BinaryProtocol.encodeMatrixSize(this.matrix);
+            case BinaryProtocol.STOP:
+                this.doWork = false;
+                return null;
+            case BinaryProtocol.LOAD_MATRIX:
+                return BinaryProtocol.encodeMatrixSize(this.loadMatrix(BinaryProtocol.decodeString(payload)));
+            case BinaryProtocol.MATRIX_BEGIN:
+                // the rows are labeled as they arrive, an illegal chunk is reported by MATRIX_END
+                int rows = payload.getInt();
+                int columns = payload.getInt();
+                // the cells are allocated at once, before any of them has arrived
+                if (rows < 0 || columns < 0 || (long) rows * columns > MAX_UPLOAD_CELLS) {
+                    this.upload = null;
+                    throw new Exception("illegal matrix of " + rows + "x" + columns
+                            + ", an upload has at most " + MAX_UPLOAD_CELLS + " cells");
+                }
+                this.upload = new StreamingLabeler(rows, columns);
+                return BinaryProtocol.empty();
+            case BinaryProtocol.MATRIX_ROWS:
+                if (this.upload != null) {
+                    this.upload.addRows(payload.getInt(), payload.getInt(), payload.asIntBuffer());
+                }
+                return null;
+            case BinaryProtocol.MATRIX_END: {
+                StreamingLabeler finished = this.upload;
+                this.upload = null;
+                if (finished == null) {
+                    throw new Exception("no streaming upload was started");
+                }
+                // the components were counted while the rows arrived, only their cells are left to collect
+                this.setMatrix(finished.finish(), finished.getNumOfSubs());
+                return BinaryProtocol.encodeUploadSummary(finished);
+            }
+            case BinaryProtocol.SET_CELL: {
+                Index index = new Index(payload.getInt(), payload.getInt());
+                return BinaryProtocol.encodeChangeSummary(this.setCell(index, payload.getInt()));
+            }
+            case BinaryProtocol.PATCH_REGION: {
+                Index topLeft = new Index(payload.getInt(), payload.getInt());
+                return BinaryProtocol.encodeChangeSummary(this.patchRegion(topLeft, BinaryProtocol.decodeRegion(payload)));
+            }
+            case BinaryProtocol.GET_ONES:
+                if (compact) {
+                    return BinaryProtocol.encodeRuns(requireResults(results).getComponentRuns().getValue());
+                }
+                return BinaryProtocol.encodeComponents(requireResults(results).getConnectedComponents().getValue());
+            case BinaryProtocol.GET_NUM_OF_SUBS:
+                return BinaryProtocol.encodeInt(requireResults(results).getNumOfSubs().getValue());
+            case BinaryProtocol.GET_SHORTEST_PATH:
+                return encodePath(this.shortestPath(results, BinaryProtocol.decodeIndices(payload),
+                        PathEngine.BIDIRECTIONAL_BFS), compact);
+            case BinaryProtocol.GET_SHORTEST_PATH_USING: {
+                PathEngine engine = BinaryProtocol.decodeEngine(payload);
+                return encodePath(this.shortestPath(results, BinaryProtocol.decodeIndices(payload), engine), compact);
             }
+            case BinaryProtocol.GET_SHORTEST_PATHS: {
+                List<List<Index>> paths = this.shortestPaths(results, BinaryProtocol.decodePairs(payload));
+                return compact ? BinaryProtocol.encodeCompactPaths(paths) : BinaryProtocol.encodePaths(paths);
+            }
+            case BinaryProtocol.GET_EASIEST_PATH:
+                return encodePath(this.easiestPath(results, BinaryProtocol.decodeIndices(payload)), compact);
+            default:
+                throw new Exception("unknown request: " + BinaryProtocol.nameOf(request.opcode));
+        }
+    }
+
+    // a path as the cells of the path, or in its compact form
+    private static ByteBuffer encodePath(List<Index> path, boolean compact) {
+        return compact ? BinaryProtocol.encodeCompactPath(path) : BinaryProtocol.encodePath(path);
+    }
+
+    /**
+     * this function handles a single request that arrived as a frame (non-blocking server)
+     * the frame holds the same objects a client writes to the stream - the request and its arguments,
+     * and the response frame holds the objects the handler writes back
+     * @param clientId - the client that sent the request
+     * @param request - the bytes of the request
+     * @return - the bytes of the response, or null if the request has no response
+     */
+    @Override
+    public byte[] handleFrame(String clientId, byte[] request) throws IOException, ClassNotFoundException {
+        this.requester = clientId;
+        this.inputStream = new ObjectInputStream(new ByteArrayInputStream(request));
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        this.outputStream = new ObjectOutputStream(response);
+        this.outputStream.flush();
+        int header = response.size();
+        try {
+            this.dispatch(Objects.requireNonNull(this.receiveRequest()));
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e.getMessage(), e);
         }
+        this.outputStream.flush();
+        return response.size() == header ? null : response.toByteArray();
     }
 
 }
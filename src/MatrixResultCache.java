@@ -0,0 +1,378 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * This class is a server-wide cache of the results computed for matrices,
+ * shared by the handlers of all the clients.
+ *
+ * a matrix is identified by the SHA-256 hash of its size and cells, so clients that upload the same matrix
+ * get the same Entry - the same Matrix object, the same connected components and number of submarines,
+ * and the paths that were recently searched on it.
+ * an Entry is created (and its computations are started) only by the first upload,
+ * uploads that arrive while it is still computing wait on the same promises.
+ *
+ * the entries are kept in LRU order and the least recently used ones are evicted
+ * when the estimated size of all the entries is above the byte budget.
+ *
+ * when the executor of the computations is a ForkJoinPool, the matrix is labeled in parallel strips
+ * that are forked on the same pool - a worker that waits for its strips runs strips itself,
+ * so a computation never blocks a thread of the pool.
+ */
+public class MatrixResultCache {
+
+    // rough sizes of the results on the heap, used for the byte budget
+    static final long BYTES_PER_CELL = Integer.BYTES;
+    static final long BYTES_PER_INDEX = 112; // Index with its 3 Integers and the entry of the set/list that holds it
+    static final long BYTES_PER_ENTRY = 512;
+
+    // the number of paths every entry remembers
+    static final int PATHS_PER_ENTRY = 64;
+
+    private final long maxBytes;
+    private final LinkedHashMap<MatrixKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong pathHits = new AtomicLong();
+    private final AtomicLong pathMisses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    // constructor
+    public MatrixResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * this function returns the entry of the matrix,
+     * if there is none it creates one and starts computing its connected components and number of submarines
+     * @param matrix - the uploaded matrix
+     * @param executor - runs the computations of a new entry
+     * @return - the entry of a matrix with the same cells
+     */
+    public Entry getOrCompute(Matrix matrix, Executor executor) {
+        return this.getOrCompute(matrix, executor, null);
+    }
+
+    /**
+     * the same as getOrCompute, for a matrix whose number of submarines is known already (a streaming upload)
+     * @param matrix - the uploaded matrix
+     * @param executor - runs the computations of a new entry
+     * @param numOfSubs - the number of submarines of the matrix, or null if it should be computed
+     * @return - the entry of a matrix with the same cells
+     */
+    public Entry getOrCompute(Matrix matrix, Executor executor, Integer numOfSubs) {
+        MatrixKey key = new MatrixKey(matrix);
+        Entry entry;
+        synchronized (this.entries) {
+            entry = this.entries.get(key);
+            if (entry != null) {
+                this.hits.incrementAndGet();
+                return entry;
+            }
+            this.misses.incrementAndGet();
+            entry = new Entry(key, matrix);
+            this.entries.put(key, entry);
+            // the cells of a mapped matrix are not on the heap
+            long matrixBytes = matrix.isMapped() ? 0 : matrix.getRows() * (long) matrix.getColumns() * BYTES_PER_CELL;
+            this.resize(entry, BYTES_PER_ENTRY + matrixBytes);
+        }
+
+        Entry created = entry;
+        Runnable components = this.labeling(created, () -> executor instanceof ForkJoinPool
+                ? ComponentLabeler.label(matrix, (ForkJoinPool) executor)
+                : ComponentLabeler.label(matrix), numOfSubs == null && !matrix.isMapped());
+        if (matrix.isMapped()) {
+            // the components of a huge matrix may not fit in the heap, so they are built only if they are asked for
+            created.pendingComponents = components;
+            created.executor = executor;
+        } else {
+            executor.execute(components);
+        }
+        if (numOfSubs != null) {
+            created.numOfSubs.setValue(numOfSubs);
+        } else if (matrix.isMapped()) {
+            executor.execute(() -> {
+                try {
+                    created.numOfSubs.setValue(matrix.getNumOfSubs());
+                } catch (RuntimeException | Error e) {
+                    created.numOfSubs.setException(e);
+                    this.forget(created);
+                }
+            });
+        }
+        return entry;
+    }
+
+    /**
+     * this function returns an entry that is not kept in the cache, for a matrix that a client changes in place
+     * its cells change with every change of the client, so no other client can share it
+     * @param matrix - the changed matrix
+     * @param numOfSubs - the number of submarines of the matrix, known already
+     * @param labels - labels the matrix, it runs only if the components are asked for
+     * @param executor - runs labels
+     * @return - the entry of the matrix
+     */
+    public Entry detached(Matrix matrix, int numOfSubs, Supplier<ComponentLabels> labels, Executor executor) {
+        Entry entry = new Entry(null, matrix);
+        entry.numOfSubs.setValue(numOfSubs);
+        entry.pendingComponents = this.labeling(entry, labels, false);
+        entry.executor = executor;
+        return entry;
+    }
+
+    /**
+     * this function returns the computation of the results of an entry out of a single labeling pass:
+     * the number of submarines is counted from the boxes of the labels as soon as the labeling is done,
+     * then the runs (the compact components) and then the components are built from the same labels
+     * @param entry - the entry
+     * @param labeling - labels the matrix of the entry
+     * @param countSubs - if the number of submarines is not known already
+     * @return - the computation
+     */
+    private Runnable labeling(Entry entry, Supplier<ComponentLabels> labeling, boolean countSubs) {
+        return () -> {
+            Set<Set<Index>> connectedComponents;
+            ComponentRuns runs;
+            try {
+                ComponentLabels labels = labeling.get();
+                if (countSubs) {
+                    entry.numOfSubs.setValue(labels.getNumOfSubs());
+                }
+                runs = ComponentRuns.of(labels);
+                entry.componentRuns.setValue(runs);
+                connectedComponents = labels.toComponents(entry.matrix);
+            } catch (RuntimeException | Error e) {
+                // e.g. out of memory, the clients get an error - the results that were set already are kept
+                entry.numOfSubs.setException(e);
+                entry.componentRuns.setException(e);
+                entry.connectedComponents.setException(e);
+                this.forget(entry);
+                return;
+            }
+            entry.connectedComponents.setValue(connectedComponents);
+            long cells = 0;
+            for (Set<Index> component : connectedComponents) {
+                cells += component.size();
+            }
+            this.resize(entry, cells * BYTES_PER_INDEX + runs.getRunCount() * 3L * Integer.BYTES);
+        };
+    }
+
+    /**
+     * this function adds delta to the size of an entry and evicts the least recently used entries
+     * while the cache is above its budget, the entry that grows is never evicted by its own growth
+     */
+    private void resize(Entry entry, long delta) {
+        synchronized (this.entries) {
+            if (entry.key == null || this.entries.get(entry.key) != entry) {
+                return; // already evicted, or detached
+            }
+            entry.bytes += delta;
+            this.bytes += delta;
+            Iterator<Entry> eldest = this.entries.values().iterator();
+            while (this.bytes > this.maxBytes && eldest.hasNext()) {
+                Entry evicted = eldest.next();
+                if (evicted == entry) {
+                    continue;
+                }
+                eldest.remove();
+                this.bytes -= evicted.bytes;
+                this.evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * this function removes an entry whose computation failed, so the next upload of its cells computes them again
+     * instead of getting the error that may have been transient (e.g. out of memory under load)
+     */
+    private void forget(Entry entry) {
+        synchronized (this.entries) {
+            if (entry.key == null || this.entries.get(entry.key) != entry) {
+                return; // already evicted, or detached
+            }
+            this.entries.remove(entry.key);
+            this.bytes -= entry.bytes;
+        }
+    }
+
+    // getter
+    public long getHits() {
+        return hits.get();
+    }
+    // getter
+    public long getMisses() {
+        return misses.get();
+    }
+    // getter
+    public long getPathHits() {
+        return pathHits.get();
+    }
+    // getter
+    public long getPathMisses() {
+        return pathMisses.get();
+    }
+    // getter
+    public long getEvictions() {
+        return evictions.get();
+    }
+    // getter
+    public long getBytes() {
+        synchronized (this.entries) {
+            return bytes;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("matrices: %d hits, %d misses; paths: %d hits, %d misses; %d evictions, ~%d bytes",
+                getHits(), getMisses(), getPathHits(), getPathMisses(), getEvictions(), getBytes());
+    }
+
+    /**
+     * a search of a path that can fail on illegal indices
+     */
+    public interface PathSearch {
+        List<Index> search() throws Exception;
+    }
+
+    /**
+     * This class holds the results of a single matrix
+     */
+    public class Entry {
+        private final MatrixKey key;
+        private final Matrix matrix;
+        private final Promise<Set<Set<Index>>> connectedComponents = new Promise<>();
+        private final Promise<ComponentRuns> componentRuns = new Promise<>();
+        private final Promise<Integer> numOfSubs = new Promise<>();
+        private final LinkedHashMap<String, List<Index>> paths = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes = 0; // guarded by the entries of the cache
+        private Runnable pendingComponents; // mapped or detached matrix - builds the components on first use, guarded by this
+        private Executor executor;
+
+        private Entry(MatrixKey key, Matrix matrix) {
+            this.key = key;
+            this.matrix = matrix;
+        }
+
+        // getter
+        public Matrix getMatrix() {
+            return matrix;
+        }
+        // getter - starts building the components of a mapped matrix
+        public Promise<Set<Set<Index>>> getConnectedComponents() {
+            this.startPending();
+            return connectedComponents;
+        }
+        // getter - the components as runs (see ComponentRuns), available before getConnectedComponents
+        public Promise<ComponentRuns> getComponentRuns() {
+            this.startPending();
+            return componentRuns;
+        }
+        private synchronized void startPending() {
+            if (this.pendingComponents != null) {
+                this.executor.execute(this.pendingComponents);
+                this.pendingComponents = null;
+                this.executor = null;
+            }
+        }
+        // getter
+        public Promise<Integer> getNumOfSubs() {
+            return numOfSubs;
+        }
+
+        /**
+         * this function returns a recently searched path, or searches it and remembers it
+         * @param kind - the kind of the search, e.g. the engine, paths of different kinds are kept apart
+         * @param indices - contains start index and end index
+         * @param search - searches the path if it is not remembered
+         * @return - the path, or null if there is none
+         * @throws Exception - if the search fails
+         */
+        public List<Index> getPath(String kind, Index[] indices, PathSearch search) throws Exception {
+            String pathKey = kind + ":" + Arrays.toString(indices);
+            synchronized (this.paths) {
+                if (this.paths.containsKey(pathKey)) {
+                    pathHits.incrementAndGet();
+                    return this.paths.get(pathKey);
+                }
+            }
+            pathMisses.incrementAndGet();
+            List<Index> path = search.search();
+            long delta = path == null ? 0 : path.size() * BYTES_PER_INDEX;
+            synchronized (this.paths) {
+                if (this.paths.put(pathKey, path) == null) {
+                    if (this.paths.size() > PATHS_PER_ENTRY) {
+                        Iterator<List<Index>> eldest = this.paths.values().iterator();
+                        List<Index> evicted = eldest.next();
+                        eldest.remove();
+                        delta -= evicted == null ? 0 : evicted.size() * BYTES_PER_INDEX;
+                    }
+                } else {
+                    delta = 0; // another thread has searched the same path meanwhile
+                }
+            }
+            resize(this, delta);
+            return path;
+        }
+    }
+
+    /**
+     * This class identifies the cells of a matrix by their SHA-256 hash
+     * a mapped matrix is identified by its file (path, modification time and size) instead,
+     * hashing a matrix that does not fit in the heap would cost more than loading it
+     */
+    static class MatrixKey {
+        private final byte[] digest;
+        private final int hashCode;
+
+        MatrixKey(Matrix matrix) {
+            MessageDigest sha256;
+            try {
+                sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+            if (matrix.getSource() != null) {
+                this.digest = sha256.digest(("file:" + matrix.getSource()).getBytes(StandardCharsets.UTF_8));
+                this.hashCode = Arrays.hashCode(this.digest);
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            buffer.putInt(matrix.getRows()).putInt(matrix.getColumns());
+            int cells = matrix.getRows() * matrix.getColumns();
+            for (int cell = 0; cell < cells; cell++) {
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    sha256.update(buffer);
+                    buffer.clear();
+                }
+                buffer.putInt(matrix.getValue(cell));
+            }
+            buffer.flip();
+            sha256.update(buffer);
+            this.digest = sha256.digest();
+            this.hashCode = Arrays.hashCode(this.digest);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof MatrixKey)) return false;
+            return Arrays.equals(this.digest, ((MatrixKey) o).digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+/**
+ * The engines that Matrix.getShortestPath can use
+ * BFS - GridBFS, explores the cells by their distance from the start index
+ * A_STAR - GridAStar with the Manhattan distance to the end index as the estimate
+ * BIDIRECTIONAL_BFS - GridBidirectionalBFS, BFS from the start index and from the end index until they meet
+ * JUMP_POINT - GridJumpPointSearch, A* over the jump points of the grid only
+ */
+public enum PathEngine {
+    BFS,
+    A_STAR,
+    BIDIRECTIONAL_BFS,
+    JUMP_POINT
+}
@@ -1,44 +1,259 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
 /**
  * A class that wraps a value in a thread-safe manner,
  * The value can be calculated in one thread, and requested in another one,
  * If the value has been called before it was calculated, the thread will be blocked
  * until setValue is called.
  *
+ * The waiting is done on a ReentrantLock Condition and not with synchronized/wait,
+ * so a virtual thread that waits for the value releases its carrier thread.
+ *
+ * A thread that should not wait (e.g. a thread of a pool that also runs the computation) registers
+ * a callback with whenComplete, or chains the next computation with thenApply / thenCombine instead.
+ * The computation may also fail (setException), then getValue throws and the callbacks get the failure.
+ * A promise is completed once, later calls of setValue and setException are ignored.
+ *
  * @param <T> The type of the value
  */
 public class Promise<T> {
 
-    private final Object syncRoot = new Object();
-    private T value;
+    private static final Object NOT_SET = new Object();
+
+    private final ReentrantLock syncRoot = new ReentrantLock();
+    private final Condition valueSet = syncRoot.newCondition();
+    // the value, or a Failure, written once under syncRoot - volatile so the fast path sees a complete value
+    private volatile Object result = NOT_SET;
+    private List<BiConsumer<? super T, Throwable>> callbacks; // guarded by syncRoot, null once completed
+
+    // the result of a computation that has failed
+    private static final class Failure {
+        private final Throwable cause;
+
+        private Failure(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * @param value the value
+     * @return a promise that has the value already
+     */
+    public static <T> Promise<T> of(T value) {
+        Promise<T> promise = new Promise<>();
+        promise.setValue(value);
+        return promise;
+    }
 
     /**
      * Gets the value of the promise if exists,
      * else, blocks the thread until the value will exist
      * @throws InterruptedException If the thread has been interrupted while waiting for the value.
+     * @throws CompletionException If the computation of the value has failed, its cause is the failure.
      */
     public T getValue() throws InterruptedException {
-        if (value != null) {
-            return value;
+        if (result == NOT_SET) {
+            syncRoot.lock();
+            try {
+                while (result == NOT_SET) {
+                    valueSet.await();
+                }
+            } finally {
+                syncRoot.unlock();
+            }
         }
+        return unwrap(result);
+    }
 
-        synchronized (syncRoot) {
-            if (value == null) {
-                syncRoot.wait();
+    /**
+     * Same as getValue, but waits at most timeout for the value.
+     * @param timeout the longest time to wait
+     * @param unit the unit of timeout
+     * @throws InterruptedException If the thread has been interrupted while waiting for the value.
+     * @throws TimeoutException If the value was not set in time.
+     * @throws CompletionException If the computation of the value has failed, its cause is the failure.
+     */
+    public T getValue(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        if (result == NOT_SET) {
+            long nanos = unit.toNanos(timeout);
+            syncRoot.lock();
+            try {
+                while (result == NOT_SET) {
+                    if (nanos <= 0) {
+                        throw new TimeoutException("the value was not set within " + timeout + " " + unit);
+                    }
+                    nanos = valueSet.awaitNanos(nanos);
+                }
+            } finally {
+                syncRoot.unlock();
             }
-
-            return value;
         }
+        return unwrap(result);
+    }
+
+    /**
+     * @return true if the value was set or the computation has failed
+     */
+    public boolean isDone() {
+        return result != NOT_SET;
     }
 
     /**
      * Sets the value of the promise and "unlock" all the threads which are waiting
-     * for the value in getValue.
+     * for the value in getValue, then runs the callbacks in the calling thread.
      * @param value the value to set
      */
     public void setValue(T value) {
-        synchronized (syncRoot) {
-            this.value = value;
-            syncRoot.notifyAll();
+        complete(value);
+    }
+
+    /**
+     * Fails the promise, the threads which are waiting in getValue throw a CompletionException
+     * and the callbacks get the failure.
+     * @param failure the reason the value could not be computed
+     */
+    public void setException(Throwable failure) {
+        complete(new Failure(failure));
+    }
+
+    /**
+     * Registers a callback that runs once the promise is completed, with the value or with the failure
+     * (the other one is null). It runs in the thread that completes the promise, or at once if it is completed.
+     * @param callback the callback
+     * @return this promise
+     */
+    public Promise<T> whenComplete(BiConsumer<? super T, Throwable> callback) {
+        syncRoot.lock();
+        try {
+            if (result == NOT_SET) {
+                if (callbacks == null) {
+                    callbacks = new ArrayList<>(2);
+                }
+                callbacks.add(callback);
+                return this;
+            }
+        } finally {
+            syncRoot.unlock();
+        }
+        run(callback, result);
+        return this;
+    }
+
+    /**
+     * @param function computes the next value from the value of this promise
+     * @return a promise of the next value, it fails if this promise fails or the function throws
+     */
+    public <R> Promise<R> thenApply(Function<? super T, ? extends R> function) {
+        return thenApply(function, Runnable::run);
+    }
+
+    /**
+     * Same as thenApply, but the function runs on the executor instead of the thread that completes this promise,
+     * and so does the completion of the next promise (with the value or with the failure) and its callbacks.
+     * @param function computes the next value from the value of this promise
+     * @param executor runs the function
+     * @return a promise of the next value
+     */
+    public <R> Promise<R> thenApply(Function<? super T, ? extends R> function, Executor executor) {
+        Promise<R> next = new Promise<>();
+        whenComplete((value, failure) -> {
+            try {
+                executor.execute(() -> {
+                    if (failure != null) {
+                        next.setException(failure);
+                        return;
+                    }
+                    try {
+                        next.setValue(function.apply(value));
+                    } catch (Throwable e) {
+                        next.setException(e);
+                    }
+                });
+            } catch (Throwable e) {
+                next.setException(failure != null ? failure : e); // e.g. the executor was shut down
+            }
+        });
+        return next;
+    }
+
+    /**
+     * @param other another promise
+     * @param function computes the next value from the values of both promises
+     * @return a promise of the next value, it is completed once both promises are, and fails if either fails
+     */
+    public <U, R> Promise<R> thenCombine(Promise<U> other, BiFunction<? super T, ? super U, ? extends R> function) {
+        Promise<R> next = new Promise<>();
+        whenComplete((value, failure) -> {
+            if (failure != null) {
+                next.setException(failure);
+                return;
+            }
+            other.whenComplete((otherValue, otherFailure) -> {
+                if (otherFailure != null) {
+                    next.setException(otherFailure);
+                    return;
+                }
+                try {
+                    next.setValue(function.apply(value, otherValue));
+                } catch (Throwable e) {
+                    next.setException(e);
+                }
+            });
+        });
+        return next;
+    }
+
+    // sets the result once, wakes up the waiting threads and runs the callbacks
+    private void complete(Object completion) {
+        List<BiConsumer<? super T, Throwable>> toRun;
+        syncRoot.lock();
+        try {
+            if (result != NOT_SET) {
+                return;
+            }
+            result = completion;
+            toRun = callbacks;
+            callbacks = null;
+            valueSet.signalAll();
+        } finally {
+            syncRoot.unlock();
+        }
+        if (toRun != null) {
+            for (BiConsumer<? super T, Throwable> callback : toRun) {
+                run(callback, completion);
+            }
+        }
+    }
+
+    // a failing callback must not stop the other callbacks, whatever it throws
+    @SuppressWarnings("unchecked")
+    private void run(BiConsumer<? super T, Throwable> callback, Object completion) {
+        try {
+            if (completion instanceof Failure) {
+                callback.accept(null, ((Failure) completion).cause);
+            } else {
+                callback.accept((T) completion, null);
+            }
+        } catch (Throwable e) {
+            System.err.println("Promise: a callback has failed: " + e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T unwrap(Object completion) {
+        if (completion instanceof Failure) {
+            throw new CompletionException(((Failure) completion).cause);
         }
+        return (T) completion;
     }
 }
@@ -0,0 +1,250 @@
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * This class receives a matrix row after row (a streaming upload) and labels its connected components
+ * while the rows arrive, so when the last row arrives the number of components and the number of
+ * submarines are known already.
+ *
+ * the labeling is the first pass of ComponentLabeler, but the union-find only holds the components
+ * that touch the previous row: at the end of every row the labels of the row are renumbered to their roots,
+ * and a component that does not continue in the row is closed - it can never grow again,
+ * so its size and bounding box are final and it is counted (as a submarine too, if it is a full rectangle).
+ * the state of the labeling is O(columns) no matter how many rows the matrix has.
+ *
+ * the cells are copied straight into the array of the Matrix that is built at the end, so the upload
+ * never holds an int[][] and a copy of it at the same time.
+ *
+ * scan runs the same labeling over a matrix that exists already, e.g. a memory-mapped matrix
+ * that is too large for its components to be built on the heap.
+ */
+public class StreamingLabeler {
+
+    // the fields of the summary of every open component, a summary takes STRIDE ints
+    private static final int SIZE = 0;
+    private static final int MIN_ROW = 1;
+    private static final int MAX_ROW = 2;
+    private static final int MIN_COLUMN = 3;
+    private static final int MAX_COLUMN = 4;
+    private static final int STRIDE = 5;
+
+    private final int rows;
+    private final int columns;
+    private final int[] cells; // null when scanning a matrix
+    private int nextRow;
+    private String failure; // the first error of the upload, reported by finish
+
+    private int[] previous; // the open component of every cell of the previous row, -1 for background
+    private int[] current;
+    private final UnionFind open = new UnionFind();
+    private int[] summaries; // by open component
+    private int[] nextSummaries;
+    private final int[] renumbered;
+
+    private int components;
+    private int rectangles; // components of more than one cell that fill their bounding box
+
+    // constructor
+    public StreamingLabeler(int rows, int columns) {
+        this(rows, columns, true);
+    }
+
+    private StreamingLabeler(int rows, int columns, boolean keepCells) {
+        if (rows < 0 || columns < 0 || (long) rows * columns > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("illegal matrix of " + rows + "x" + columns);
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.cells = keepCells ? new int[rows * columns] : null;
+        this.previous = new int[columns];
+        this.current = new int[columns];
+        Arrays.fill(this.previous, -1);
+        // a row has at most (columns + 1) / 2 components, the previous row as many
+        int maxOpen = columns + 2;
+        this.summaries = new int[maxOpen * STRIDE];
+        this.nextSummaries = new int[maxOpen * STRIDE];
+        this.renumbered = new int[maxOpen];
+    }
+
+    // getter
+    public int getRows() {
+        return rows;
+    }
+
+    // getter
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * this function adds the next rows of the matrix and labels them
+     * an illegal chunk fails the upload, the error is reported by finish
+     * @param firstRow - the row of the first cell, must be the row after the last row that was added
+     * @param rowCount - the number of rows in the chunk
+     * @param chunk - the cells of the rows, row after row
+     */
+    public void addRows(int firstRow, int rowCount, IntBuffer chunk) {
+        if (this.failure != null) {
+            return;
+        }
+        if (firstRow != this.nextRow || rowCount <= 0 || rowCount > this.rows - firstRow
+                || chunk.remaining() != rowCount * this.columns) {
+            this.failure = "illegal chunk of " + rowCount + " rows from row " + firstRow
+                    + ", expected row " + this.nextRow + " of " + this.rows;
+            return;
+        }
+        chunk.get(this.cells, firstRow * this.columns, rowCount * this.columns);
+        for (int i = firstRow; i < firstRow + rowCount; i++) {
+            this.labelRow(i, this.cells, i * this.columns);
+        }
+        this.nextRow += rowCount;
+    }
+
+    /**
+     * this function counts the components and the submarines of a matrix in a single pass,
+     * holding a single row of the matrix at a time
+     * @param matrix - the matrix, e.g. a memory-mapped one
+     * @return - the labeler, getComponentCount and getNumOfSubs hold the result
+     */
+    public static StreamingLabeler scan(Matrix matrix) {
+        StreamingLabeler labeler = new StreamingLabeler(matrix.getRows(), matrix.getColumns(), false);
+        int[] row = new int[matrix.getColumns()];
+        for (int i = 0; i < matrix.getRows(); i++) {
+            matrix.copyRow(i, row);
+            labeler.labelRow(i, row, 0);
+        }
+        labeler.nextRow = matrix.getRows();
+        labeler.closeAll();
+        return labeler;
+    }
+
+    /**
+     * the first pass of the labeling over a single row, followed by closing the components that ended
+     * @param i - the row
+     * @param row - holds the cells of the row
+     * @param base - the position of the first cell of the row in row
+     */
+    private void labelRow(int i, int[] row, int base) {
+        for (int j = 0; j < this.columns; j++) {
+            if (!ComponentLabeler.isForeground(row[base + j])) {
+                this.current[j] = -1;
+                continue;
+            }
+            int up = this.previous[j] < 0 ? -1 : this.open.find(this.previous[j]);
+            int left = j > 0 && this.current[j - 1] >= 0 ? this.open.find(this.current[j - 1]) : -1;
+            int label;
+            if (up < 0 && left < 0) {
+                label = this.open.makeSet();
+                int s = label * STRIDE;
+                this.summaries[s + SIZE] = 0;
+                this.summaries[s + MIN_ROW] = i;
+                this.summaries[s + MIN_COLUMN] = j;
+                this.summaries[s + MAX_COLUMN] = j;
+            } else if (up < 0 || left == up) {
+                label = left;
+            } else if (left < 0) {
+                label = up;
+            } else {
+                label = this.open.union(up, left);
+                this.merge(label == up ? left : up, label);
+            }
+            int s = label * STRIDE;
+            this.summaries[s + SIZE]++;
+            this.summaries[s + MAX_ROW] = i;
+            this.summaries[s + MIN_COLUMN] = Math.min(this.summaries[s + MIN_COLUMN], j);
+            this.summaries[s + MAX_COLUMN] = Math.max(this.summaries[s + MAX_COLUMN], j);
+            this.current[j] = label;
+        }
+
+        // the components of this row are renumbered 0..k-1, the rest are closed
+        int labels = this.open.size();
+        Arrays.fill(this.renumbered, 0, labels, -1);
+        int k = 0;
+        for (int j = 0; j < this.columns; j++) {
+            if (this.current[j] < 0) {
+                continue;
+            }
+            int root = this.open.find(this.current[j]);
+            if (this.renumbered[root] < 0) {
+                this.renumbered[root] = k;
+                System.arraycopy(this.summaries, root * STRIDE, this.nextSummaries, k * STRIDE, STRIDE);
+                k++;
+            }
+            this.current[j] = this.renumbered[root];
+        }
+        for (int label = 0; label < labels; label++) {
+            if (this.open.isRoot(label) && this.renumbered[label] < 0) {
+                this.close(label);
+            }
+        }
+        this.open.clear();
+        for (int label = 0; label < k; label++) {
+            this.open.makeSet();
+        }
+        int[] swap = this.summaries;
+        this.summaries = this.nextSummaries;
+        this.nextSummaries = swap;
+        swap = this.previous;
+        this.previous = this.current;
+        this.current = swap;
+    }
+
+    // adds the summary of a component that was merged into another one
+    private void merge(int from, int into) {
+        int f = from * STRIDE;
+        int t = into * STRIDE;
+        this.summaries[t + SIZE] += this.summaries[f + SIZE];
+        this.summaries[t + MIN_ROW] = Math.min(this.summaries[t + MIN_ROW], this.summaries[f + MIN_ROW]);
+        this.summaries[t + MAX_ROW] = Math.max(this.summaries[t + MAX_ROW], this.summaries[f + MAX_ROW]);
+        this.summaries[t + MIN_COLUMN] = Math.min(this.summaries[t + MIN_COLUMN], this.summaries[f + MIN_COLUMN]);
+        this.summaries[t + MAX_COLUMN] = Math.max(this.summaries[t + MAX_COLUMN], this.summaries[f + MAX_COLUMN]);
+    }
+
+    // counts a component that is complete
+    private void close(int label) {
+        int s = label * STRIDE;
+        long area = (long) (this.summaries[s + MAX_ROW] - this.summaries[s + MIN_ROW] + 1)
+                * (this.summaries[s + MAX_COLUMN] - this.summaries[s + MIN_COLUMN] + 1);
+        this.components++;
+        if (this.summaries[s + SIZE] > 1 && this.summaries[s + SIZE] == area) {
+            this.rectangles++;
+        }
+    }
+
+    /**
+     * this function ends the upload, the components that reach the last row are closed
+     * @return - the uploaded matrix
+     * @throws Exception - if a chunk was illegal or some rows are missing
+     */
+    public Matrix finish() throws Exception {
+        if (this.failure == null && this.nextRow != this.rows) {
+            this.failure = "only " + this.nextRow + " of " + this.rows + " rows were sent";
+        }
+        if (this.failure != null) {
+            throw new Exception(this.failure);
+        }
+        this.closeAll();
+        return new Matrix(this.rows, this.columns, this.cells);
+    }
+
+    // closes the components that reach the last row
+    private void closeAll() {
+        for (int label = 0; label < this.open.size(); label++) {
+            this.close(label); // all of them are roots after renumbering
+        }
+        this.open.clear();
+    }
+
+    // getter - the number of components, once the upload is finished
+    public int getComponentCount() {
+        return components;
+    }
+
+    /**
+     * @return - the number of submarines, once the upload is finished,
+     * the same as Matrix.getNumOfSubs - 0 unless every component is a submarine
+     */
+    public int getNumOfSubs() {
+        return this.rectangles == this.components ? this.rectangles : 0;
+    }
+}
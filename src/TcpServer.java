@@ -1,6 +1,17 @@
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -51,12 +62,21 @@ public class TcpServer {
 
     private final int port; // port associated with the server
     private boolean stopServer;  // if the server should continue serving clients
-    private ThreadPoolExecutor threadPool; // handle multiple clients concurrently
+    private final ExecutionMode executionMode; // how the handlers of the clients are run
+    private ExecutorService threadPool; // handle multiple clients concurrently
     private Supplier<IHandler> requestHandlerFactory; // setting every client with its own handler
+    private volatile Selector selector; // the selector of the non-blocking mode
+    private final Queue<FrameConnection> answeredConnections = new ConcurrentLinkedQueue<>(); // have responses to write
 
     // constructor
     public TcpServer(int port) {
+        this(port, ExecutionMode.THREAD_POOL);
+    }
+
+    // constructor
+    public TcpServer(int port, ExecutionMode executionMode) {
         this.port = port;
+        this.executionMode = executionMode;
         this.stopServer = false;
         threadPool = null;
         requestHandlerFactory = null;
@@ -69,15 +89,16 @@ public class TcpServer {
      * starts the server in a new thread
      * waiting for a client to connect to the server
      * after the client is connected to the server
-     * the threadPool gives the client thread to run on and manage the clients
+     * the threadPool gives the client thread to run on and manage the clients,
+     * in ExecutionMode.VIRTUAL_THREADS every client gets a virtual thread of its own
      *
      */
     public void run(Supplier<IHandler> concreteHandlerFactory) {
         this.requestHandlerFactory = concreteHandlerFactory;
 
         new Thread(() -> {
-            threadPool = new ThreadPoolExecutor(10, 20, 10,
-                    TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+            threadPool = executionMode == ExecutionMode.VIRTUAL_THREADS ? newVirtualThreadPerTaskExecutor()
+                    : new ThreadPoolExecutor(10, 20, 10, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
             try {
                 /*
                  if no port is specified - one will be automatically allocated by OS
@@ -94,6 +115,8 @@ public class TcpServer {
                 System.out.println("Server: Waiting for clients");
                 while (!stopServer) {
                     Socket serverToSpecificClient = serverSocket.accept(); // 2 operations: listen()+accept()
+                    // small frames (the credits of a stream, pipelined responses) must not wait for the ack of the last one
+                    serverToSpecificClient.setTcpNoDelay(true);
                     System.out.println("Server: Accepted connection with client " +
                             serverToSpecificClient.getRemoteSocketAddress().toString().split(":")[1]);
                 /*
@@ -122,9 +145,130 @@ public class TcpServer {
         }).start();
     }
 
+    /**
+     * this function creates an executor that starts a new virtual thread for every task
+     * virtual threads exist from Java 21, so the executor is looked up by reflection and the server
+     * still builds on older JDKs - there it falls back to a new platform thread for every task
+     * @return - the executor of the virtual threads mode
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (!hasVirtualThreads()) {
+            System.err.println("Server: Virtual threads require Java 21, using a platform thread per client");
+            return Executors.newCachedThreadPool();
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("the virtual threads executor could not be created", e);
+        }
+    }
+
+    // if ExecutionMode.VIRTUAL_THREADS really runs virtual threads (Java 21+), else it falls back to platform threads
+    static boolean hasVirtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     *
+     * @param concreteHandlerFactory - the specific frame handler we about to use
+     *
+     * starts the server in non-blocking mode in a new thread
+     * a single thread waits on a Selector for all the clients:
+     * it accepts new connections, reads the bytes that arrived and cuts them into complete frames,
+     * and writes the responses that are ready - all without blocking on any client.
+     * only complete requests are handed to the threadPool, so thousands of idle clients hold no thread
+     *
+     */
+    public void runNonBlocking(Supplier<? extends IFrameHandler> concreteHandlerFactory) {
+        new Thread(() -> {
+            threadPool = new ThreadPoolExecutor(10, 20, 10,
+                    TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+            try (Selector selector = Selector.open();
+                 ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+                this.selector = selector;
+                serverChannel.bind(new InetSocketAddress(port));
+                serverChannel.configureBlocking(false);
+                serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+                System.out.println("Server: Waiting for clients (non-blocking)");
+                while (!stopServer) {
+                    selector.select();
+                    // the connections whose requests were handled since the last select
+                    FrameConnection answered;
+                    while ((answered = answeredConnections.poll()) != null) {
+                        try {
+                            answered.responseReady();
+                        } catch (IOException | CancelledKeyException e) {
+                            dropConnection(answered, e);
+                        }
+                    }
+                    Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                    while (selectedKeys.hasNext()) {
+                        SelectionKey key = selectedKeys.next();
+                        selectedKeys.remove();
+                        try {
+                            if (key.isValid() && key.isAcceptable()) {
+                                this.accept(serverChannel, selector, concreteHandlerFactory);
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                ((FrameConnection) key.attachment()).read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                ((FrameConnection) key.attachment()).write();
+                            }
+                        } catch (IOException | CancelledKeyException e) {
+                            // a single client failed, the others keep being served
+                            dropConnection((FrameConnection) key.attachment(), e);
+                        }
+                    }
+                }
+            } catch (IOException ioException) {
+                ioException.printStackTrace();
+            }
+        }).start();
+    }
+
+    // closes the connection of a client that failed, without failing the selector loop of the other clients
+    private static void dropConnection(FrameConnection connection, Exception failure) {
+        System.err.println("Server: " + failure.getMessage());
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (IOException e) {
+            System.err.println("Server: " + e.getMessage());
+        }
+    }
+
+    // accepts a pending connection and registers it for reading
+    private void accept(ServerSocketChannel serverChannel, Selector selector,
+                        Supplier<? extends IFrameHandler> concreteHandlerFactory) throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        String clientId = channel.getRemoteAddress().toString().split(":")[1];
+        System.out.println("Server: Accepted connection with client " + clientId);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new FrameConnection(channel, key, concreteHandlerFactory.get(), clientId, threadPool,
+                connection -> {
+                    answeredConnections.add(connection);
+                    selector.wakeup();
+                }));
+    }
+
     public void stop() {
         if (!stopServer) {
             stopServer = true;
+            if (selector != null) {
+                selector.wakeup();
+            }
             if (threadPool != null) { // avoid situation that someone stopped the server
                 // without ever invoking run method
                 threadPool.shutdown();
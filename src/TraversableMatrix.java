@@ -10,6 +10,8 @@ public class TraversableMatrix implements Traversable<Index> {
     protected final Matrix matrix;
     protected Index startIndex;
     protected Index endIndex;
+    protected boolean weighted; // if the cost of entering a cell is its value, else every cell costs 1
+    private final int[] neighbors = new int[4]; // of getReachableNodes, a search walks the matrix in a single thread
 
     // constructor
     public TraversableMatrix(Matrix matrix) {
@@ -23,6 +25,12 @@ public class TraversableMatrix implements Traversable<Index> {
         this.endIndex = end;
     }
 
+    // constructor
+    public TraversableMatrix(Matrix matrix, Index start, Index end, boolean weighted) {
+        this(matrix, start, end);
+        this.weighted = weighted;
+    }
+
     /**
      *
      * @return - start Index Wrapped in a Node
@@ -53,16 +61,79 @@ public class TraversableMatrix implements Traversable<Index> {
      */
     @Override
     public Collection<Node<Index>> getReachableNodes(Node<Index> someNode) {
-        List<Node<Index>> reachableIndices = new ArrayList<>();
-        for (Index index : this.matrix.getNeighbors(someNode.getData())) {
-            if (matrix.getValue(index) != 0) {
-                Node<Index> indexNode = new Node<>(index, someNode);
-                reachableIndices.add(indexNode);
+        List<Node<Index>> reachableIndices = new ArrayList<>(4);
+        Index index = someNode.getData();
+        int count = this.matrix.getNeighbors(this.matrix.cellId(index.getRow(), index.getColumn()), this.neighbors);
+        for (int i = 0; i < count; i++) {
+            if (matrix.getValue(this.neighbors[i]) != 0) {
+                reachableIndices.add(new Node<>(this.matrix.toIndex(this.neighbors[i]), someNode));
             }
         }
         return reachableIndices;
     }
 
+    /*
+    the functions below define the same graph over the cell ids of the matrix,
+    so searches like GridAStar can walk it without wrapping every cell in a Node
+     */
+
+    // getter
+    public Matrix getMatrix() {
+        return matrix;
+    }
+
+    // getter
+    public boolean isWeighted() {
+        return weighted;
+    }
+
+    // the id of the start cell
+    public int getOriginCell() throws NullPointerException {
+        if (this.startIndex == null) throw new NullPointerException("start index is not initialized");
+        return matrix.cellId(startIndex.getRow(), startIndex.getColumn());
+    }
+
+    // the id of the end cell
+    public int getTargetCell() throws NullPointerException {
+        if (this.endIndex == null) throw new NullPointerException("end index is not initialized");
+        return matrix.cellId(endIndex.getRow(), endIndex.getColumn());
+    }
+
+    /**
+     * the same as getReachableNodes - the neighbors that are not equal to zero
+     * @param cell - the id of some cell
+     * @param buffer - an array of at least 4 cells that receives the reachable ids
+     * @return - the number of reachable cells that were written to the buffer
+     */
+    public int getReachableCells(int cell, int[] buffer) {
+        int count = matrix.getNeighbors(cell, buffer);
+        int reachable = 0;
+        for (int i = 0; i < count; i++) {
+            if (matrix.getValue(buffer[i]) != 0) {
+                buffer[reachable++] = buffer[i];
+            }
+        }
+        return reachable;
+    }
+
+    // the cost of entering a cell
+    public long getCost(int cell) {
+        return weighted ? matrix.getValue(cell) : 1;
+    }
+
+    /**
+     * this function estimates the cost of the cheapest path from a cell to the end cell
+     * the estimate is the Manhattan distance, and in a weighted matrix every step costs at least
+     * the smallest value that is not zero, so it never overestimates and A* stays optimal
+     * @param cell - the id of some cell
+     * @return - a lower bound of the cost from cell to the end cell
+     */
+    public long estimateCostToTarget(int cell) {
+        long distance = Math.abs(matrix.rowOf(cell) - endIndex.getRow())
+                + Math.abs(matrix.columnOf(cell) - endIndex.getColumn());
+        return weighted ? distance * matrix.getMinPositiveValue() : distance;
+    }
+
     @Override
     public String toString() {
         return matrix.toString();
@@ -0,0 +1,102 @@
+import java.util.Arrays;
+
+/**
+ * This class implements a disjoint-set (union-find) structure over int elements
+ * it is used by the component labeling for recording which provisional labels
+ * belong to the same connected component.
+ *
+ * find uses path halving and union always links the larger root under the smaller one,
+ * so the root of every set is its smallest element.
+ */
+public class UnionFind {
+
+    private int[] parent;
+    private int size;
+
+    // constructor - an empty structure, elements are added using makeSet
+    public UnionFind() {
+        this.parent = new int[16];
+        this.size = 0;
+    }
+
+    // constructor - every element 0..size-1 starts as a set of its own
+    public UnionFind(int size) {
+        this.parent = new int[Math.max(size, 1)];
+        for (int i = 0; i < size; i++) {
+            this.parent[i] = i;
+        }
+        this.size = size;
+    }
+
+    /**
+     * this function adds a new element that is a set of its own
+     * @return - the new element
+     */
+    public int makeSet() {
+        if (this.size == this.parent.length) {
+            this.parent = Arrays.copyOf(this.parent, this.parent.length * 2);
+        }
+        this.parent[this.size] = this.size;
+        return this.size++;
+    }
+
+    /**
+     * @param element - some element of the structure
+     * @return - the root (smallest element) of the set that contains element
+     */
+    public int find(int element) {
+        while (this.parent[element] != element) {
+            this.parent[element] = this.parent[this.parent[element]];
+            element = this.parent[element];
+        }
+        return element;
+    }
+
+    /**
+     * same as find but without path halving, so it never writes to the structure
+     * and can be called from several threads once all the unions are done
+     * @param element - some element of the structure
+     * @return - the root (smallest element) of the set that contains element
+     */
+    public int root(int element) {
+        while (this.parent[element] != element) {
+            element = this.parent[element];
+        }
+        return element;
+    }
+
+    /**
+     * @param element - some element of the structure
+     * @return - if the element is the root of its set
+     */
+    public boolean isRoot(int element) {
+        return this.parent[element] == element;
+    }
+
+    /**
+     * this function merges the sets of the two elements
+     * @return - the root of the merged set
+     */
+    public int union(int first, int second) {
+        int firstRoot = this.find(first);
+        int secondRoot = this.find(second);
+        if (firstRoot < secondRoot) {
+            this.parent[secondRoot] = firstRoot;
+            return firstRoot;
+        }
+        this.parent[firstRoot] = secondRoot;
+        return secondRoot;
+    }
+
+    /**
+     * this function removes all the elements, the memory is kept for the elements that will be added next
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+    // getter
+    public int size() {
+        return this.size;
+    }
+}
@@ -0,0 +1,13 @@
+/**
+ * The engines that Matrix.getWeightedShortestPath can use
+ * AUTO - BUCKET_QUEUE if the values of the matrix are not negative and below GridDial.MAX_WEIGHT, else HEAP
+ * HEAP - GridDijkstra, Dijkstra with an indexed binary heap
+ * BUCKET_QUEUE - GridDial, Dijkstra with Dial's bucket queue (no negative values, all below GridDial.MAX_WEIGHT)
+ * A_STAR - GridAStar with the Manhattan distance times the smallest value as the estimate
+ */
+public enum WeightedPathEngine {
+    AUTO,
+    HEAP,
+    BUCKET_QUEUE,
+    A_STAR
+}
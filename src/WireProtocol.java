@@ -0,0 +1,8 @@
+/**
+ * the protocols a Client can speak with the server
+ */
+public enum WireProtocol {
+    OBJECTS, // serialized objects over the stream (legacy)
+    FRAMED_OBJECTS, // serialized objects in length prefixed frames, for a server in non-blocking mode
+    BINARY // the compact BinaryProtocol, negotiated in a handshake - falls back to OBJECTS if the server refuses
+}